@@ -0,0 +1,89 @@
+package com.example.users_test_task.benchmarks;
+
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.service.RegisterJournal;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * benchmarks of the register journal, an accepted user is appended and synced to the storage.
+ * Compare with the time of /register, which commits one db transaction per user
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegisterJournalBenchmarks {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private Path dir;
+    private RegisterJournal journal;
+    private User user;
+
+    /**
+     * open the journal in a temporary directory
+     *
+     * @throws IOException if the journal is not opened
+     */
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("users-journal");
+        journal = new RegisterJournal(dir, 64 * 1024 * 1024, Jackson2ObjectMapperBuilder.json().build());
+        journal.open();
+
+        user = new User();
+        user.setEmail("test_user@gmail.com");
+        user.setFirstName("test");
+        user.setLastName("user");
+        user.setDateOfBirth(LocalDate.of(2000, 1, 1));
+        user.setAddress("address");
+        user.setPhoneNumber("1234567890");
+    }
+
+    /**
+     * close the journal and delete its files
+     *
+     * @throws IOException if the files are not deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (var stream = Files.walk(dir)) {
+            for (var file : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * append and sync one user from one thread
+     *
+     * @throws IOException if the journal is not written
+     */
+    @Benchmark
+    public void appendAndSync() throws IOException {
+        journal.sync(journal.append(String.valueOf(ids.incrementAndGet()), user));
+    }
+
+    /**
+     * append and sync one user from 8 threads, the syncs are grouped
+     *
+     * @throws IOException if the journal is not written
+     */
+    @Benchmark
+    @Threads(8)
+    public void appendAndSyncConcurrent() throws IOException {
+        journal.sync(journal.append(String.valueOf(ids.incrementAndGet()), user));
+    }
+}
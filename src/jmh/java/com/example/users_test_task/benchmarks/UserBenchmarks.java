@@ -0,0 +1,141 @@
+package com.example.users_test_task.benchmarks;
+
+import com.example.users_test_task.config.UserProperties;
+import com.example.users_test_task.dto.UserDTO;
+import com.example.users_test_task.exception.ValidationException;
+import com.example.users_test_task.mapper.UserMapper;
+import com.example.users_test_task.mapper.UserMapperImpl;
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.service.UserFieldRegistry;
+import com.example.users_test_task.service.UserValidator;
+import com.example.users_test_task.service.ValidationService;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks of the user service hot paths without spring context and db
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class UserBenchmarks {
+
+    private ValidatorFactory validatorFactory;
+    private ValidationService validationService;
+    private ValidationService genericValidationService;
+    private UserMapper userMapper;
+    private UserFieldRegistry userFieldRegistry;
+
+    private UserDTO userDTO;
+    private User user;
+    private Map<String, Object> fields;
+
+    /**
+     * set up services and test data
+     */
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validationService = new ValidationService(validatorFactory.getValidator(), new UserValidator(), new UserProperties());
+        var genericProperties = new UserProperties();
+        genericProperties.getValidation().setFastPath(false);
+        genericValidationService = new ValidationService(validatorFactory.getValidator(), new UserValidator(), genericProperties);
+        userMapper = new UserMapperImpl();
+        userFieldRegistry = new UserFieldRegistry();
+
+        userDTO = new UserDTO();
+        userDTO.setId(1L);
+        userDTO.setEmail("test_user@gmail.com");
+        userDTO.setFirstName("test");
+        userDTO.setLastName("user");
+        userDTO.setDateOfBirth(LocalDate.of(2000, 1, 1));
+        userDTO.setAddress("address");
+        userDTO.setPhoneNumber("1234567890");
+        user = userMapper.toUser(userDTO);
+
+        fields = new LinkedHashMap<>();
+        fields.put("id", 1);
+        fields.put("email", "new_test_user@gmail.com");
+        fields.put("firstName", "new name");
+        fields.put("dateOfBirth", "2001-02-03");
+        fields.put("phoneNumber", "0987654321");
+    }
+
+    /**
+     * close validator factory
+     */
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    /**
+     * ValidationService.isValidUser benchmark
+     *
+     * @return validation result
+     * @throws ValidationException if user not valid
+     */
+    @Benchmark
+    public boolean isValidUser() throws ValidationException {
+        return validationService.isValidUser(user);
+    }
+
+    /**
+     * ValidationService.isValidUser with the generic validator only benchmark
+     *
+     * @return validation result
+     * @throws ValidationException if user not valid
+     */
+    @Benchmark
+    public boolean isValidUserGeneric() throws ValidationException {
+        return genericValidationService.isValidUser(user);
+    }
+
+    /**
+     * UserMapper.toUser benchmark
+     *
+     * @return mapped user
+     */
+    @Benchmark
+    public User toUser() {
+        return userMapper.toUser(userDTO);
+    }
+
+    /**
+     * the fields loop of UserService.updateFields benchmark
+     *
+     * @return updated user
+     */
+    @Benchmark
+    public User updateFields() {
+        var updatedUser = new User();
+        updatedUser.setId(userFieldRegistry.toId(fields.get("id")));
+        for (var field : fields.entrySet()) {
+            if (!field.getKey().equals("id")) {
+                userFieldRegistry.set(updatedUser, field.getKey(), field.getValue());
+            }
+        }
+        return updatedUser;
+    }
+
+    /**
+     * User.copy benchmark
+     *
+     * @return copied user
+     */
+    @Benchmark
+    public User copy() {
+        var copiedUser = new User();
+        copiedUser.copy(user);
+        return copiedUser;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.users_test_task.benchmarks;
+
+import com.example.users_test_task.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks of the jackson serialization of users lists, with the same object mapper settings as in spring boot
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class UserJsonBenchmarks {
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private ObjectWriter writer;
+    private List<User> users;
+
+    /**
+     * set up object writer and users list
+     */
+    @Setup
+    public void setUp() {
+        writer = Jackson2ObjectMapperBuilder.json().build().writerFor(List.class);
+
+        users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            var user = new User();
+            user.setId((long) i);
+            user.setEmail("test_user" + i + "@gmail.com");
+            user.setFirstName("test");
+            user.setLastName("user");
+            user.setDateOfBirth(LocalDate.of(2000, 1, 1).plusDays(i));
+            user.setAddress("address");
+            user.setPhoneNumber("1234567890");
+            user.setVersion(0L);
+            users.add(user);
+        }
+    }
+
+    /**
+     * serialize users list to json bytes
+     *
+     * @return json bytes
+     * @throws JsonProcessingException if something is wrong on serialization
+     */
+    @Benchmark
+    public byte[] writeUsers() throws JsonProcessingException {
+        return writer.writeValueAsBytes(users);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.users_test_task.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * latency histogram and error count of one endpoint
+ */
+public class EndpointStats {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param name - endpoint name
+     */
+    public EndpointStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * record one call of the endpoint
+     *
+     * @param latencyNanos - call latency in nanoseconds
+     * @param success      - is the response successful
+     */
+    public void record(long latencyNanos, boolean success) {
+        recorder.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * drop everything recorded before, it is called after the warm up
+     */
+    public void reset() {
+        recorder.reset();
+        errors.reset();
+    }
+
+    /**
+     * print the summary line and write the full percentile distribution to @param dir
+     *
+     * @param out             - output for the summary
+     * @param durationSeconds - measured duration in seconds
+     * @param dir             - directory for the .hgrm files
+     * @throws IOException if the file can not be written
+     */
+    public void report(PrintStream out, double durationSeconds, Path dir) throws IOException {
+        Histogram histogram = recorder.getIntervalHistogram();
+        long count = histogram.getTotalCount();
+
+        out.printf("%-20s %10d %8d %12.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name, count, errors.sum(), count / durationSeconds,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+
+        if (count > 0) {
+            Files.createDirectories(dir);
+            try (var file = new PrintStream(Files.newOutputStream(dir.resolve(name + ".hgrm")))) {
+                histogram.outputPercentileDistribution(file, 1_000_000.0);
+            }
+        }
+    }
+
+    /**
+     * print the header of summary lines
+     *
+     * @param out - output for the summary
+     */
+    public static void printHeader(PrintStream out) {
+        out.printf("%-20s %10s %8s %12s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.users_test_task.load;
+
+import com.example.users_test_task.UsersTestTaskApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * load generator for the users api. It boots the application against an in-memory H2 db in PostgreSQL mode
+ * (or uses an already started application from url option), registers the dataset and then calls the endpoints
+ * with the configured mix from several threads.
+ * <p>
+ * Options are passed as key=value arguments:
+ * <ul>
+ *     <li>url - url of a started application, by default the application is started here</li>
+ *     <li>profile - spring profiles of the started application, e.g. virtual for request handling on virtual threads</li>
+ *     <li>threads - count of concurrent clients, default 8</li>
+ *     <li>warmup - warm up duration in seconds, default 10</li>
+ *     <li>duration - measured duration in seconds, default 30</li>
+ *     <li>dataset - count of users registered before the run, default 10000</li>
+ *     <li>mix - weights of endpoints, default register=20,update=20,update_fields=20,delete=10,get_users_by_dates=30</li>
+ *     <li>report - directory for .hgrm files, default target/load</li>
+ * </ul>
+ */
+public class UserLoadGenerator {
+
+    private static final String DEFAULT_MIX = "register=20,update=20,update_fields=20,delete=10,get_users_by_dates=30";
+    private static final LocalDate FIRST_DATE_OF_BIRTH = LocalDate.of(1950, 1, 1);
+    private static final int DATE_OF_BIRTH_DAYS = 18_000;
+    private static final int REGISTER_BATCH_SIZE = 1000;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final String baseUrl;
+    private final int dataset;
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    private final String[] mix;
+
+    private final AtomicLong emailCounter = new AtomicLong();
+    private final List<Long> datasetIds = new ArrayList<>();
+    private final Queue<Long> registeredIds = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param baseUrl - url of the users api
+     * @param dataset - count of users registered before the run
+     * @param mix     - weights of endpoints
+     */
+    public UserLoadGenerator(String baseUrl, int dataset, String mix) {
+        this.baseUrl = baseUrl;
+        this.dataset = dataset;
+        this.mix = parseMix(mix);
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = parseOptions(args);
+        var threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        var warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        var duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        var dataset = Integer.parseInt(options.getOrDefault("dataset", "10000"));
+        var report = Path.of(options.getOrDefault("report", "target/load"));
+
+        ConfigurableApplicationContext context = null;
+        var url = options.get("url");
+        if (url == null) {
+            context = startApplication(options.getOrDefault("profile", ""));
+            url = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            var generator = new UserLoadGenerator(url + "/api/v1/users", dataset, options.getOrDefault("mix", DEFAULT_MIX));
+            generator.registerDataset();
+            generator.run(threads, warmup, duration, report);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * start the application on a random port with an in-memory H2 db
+     *
+     * @param profile - active spring profiles
+     * @return application context
+     */
+    private static ConfigurableApplicationContext startApplication(String profile) {
+        return new SpringApplicationBuilder(UsersTestTaskApplication.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:users_load;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driverClassName=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--logging.level.root=warn",
+                        "--spring.profiles.active=" + profile
+                );
+    }
+
+    /**
+     * register the dataset users with register_batch
+     *
+     * @throws Exception if the dataset is not registered
+     */
+    public void registerDataset() throws Exception {
+        for (int from = 0; from < dataset; from += REGISTER_BATCH_SIZE) {
+            var users = new ArrayList<Map<String, Object>>();
+            for (int i = from; i < Math.min(dataset, from + REGISTER_BATCH_SIZE); i++) {
+                users.add(createUser(null, "load_user" + i + "@gmail.com", i));
+            }
+
+            var response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/register_batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(users))));
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Error. Dataset is not registered: " + response.body());
+            }
+
+            for (var result : objectMapper.readTree(response.body())) {
+                if (result.hasNonNull("user")) {
+                    datasetIds.add(result.get("user").get("id").asLong());
+                } else {
+                    System.out.println("Dataset user is not registered: " + result);
+                }
+            }
+        }
+        if (datasetIds.isEmpty()) {
+            throw new IllegalStateException("Error. Dataset is empty");
+        }
+        System.out.printf("Registered %d users%n", datasetIds.size());
+    }
+
+    /**
+     * call the endpoints from @param threads clients, warm up first and then measure
+     *
+     * @param threads  - count of concurrent clients
+     * @param warmup   - warm up duration in seconds
+     * @param duration - measured duration in seconds
+     * @param report   - directory for .hgrm files
+     * @throws Exception if something is wrong
+     */
+    public void run(int threads, int warmup, int duration, Path report) throws Exception {
+        var executor = Executors.newFixedThreadPool(threads);
+        var stop = new CountDownLatch(1);
+        var clients = new ArrayList<Future<?>>();
+        for (int i = 0; i < threads; i++) {
+            clients.add(executor.submit(() -> {
+                var random = ThreadLocalRandom.current();
+                while (stop.getCount() > 0) {
+                    call(mix[random.nextInt(mix.length)], random);
+                }
+                return null;
+            }));
+        }
+
+        double measured;
+        try {
+            TimeUnit.SECONDS.sleep(warmup);
+            stats.values().forEach(EndpointStats::reset);
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(duration);
+            measured = (System.nanoTime() - start) / 1_000_000_000.0;
+            stop.countDown();
+
+            for (var client : clients) {
+                client.get();
+            }
+        } finally {
+            stop.countDown();
+            executor.shutdownNow();
+        }
+
+        System.out.printf("Threads: %d, dataset: %d, duration: %.1f s%n", threads, dataset, measured);
+        EndpointStats.printHeader(System.out);
+        for (var endpoint : stats.values()) {
+            endpoint.report(System.out, measured, report);
+        }
+    }
+
+    /**
+     * call one endpoint and record its latency
+     *
+     * @param endpoint - endpoint name
+     * @param random   - random of the client thread
+     * @throws IOException          if the request is failed
+     * @throws InterruptedException if the client is interrupted
+     */
+    private void call(String endpoint, ThreadLocalRandom random) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder().header("Content-Type", "application/json");
+        Long deletedId = null;
+
+        switch (endpoint) {
+            case "register" -> request.uri(URI.create(baseUrl + "/register"))
+                    .POST(json(createUser(null, "load_user_new" + emailCounter.incrementAndGet() + "@gmail.com",
+                            random.nextInt(DATE_OF_BIRTH_DAYS))));
+            case "update" -> request.uri(URI.create(baseUrl + "/update"))
+                    .POST(json(createUser(datasetIds.get(random.nextInt(datasetIds.size())),
+                            "load_user_new" + emailCounter.incrementAndGet() + "@gmail.com",
+                            random.nextInt(DATE_OF_BIRTH_DAYS))));
+            case "update_fields" -> request.uri(URI.create(baseUrl + "/update_fields"))
+                    .POST(json(Map.of(
+                            "id", datasetIds.get(random.nextInt(datasetIds.size())),
+                            "firstName", "name" + random.nextInt(1000)
+                    )));
+            case "delete" -> {
+                deletedId = registeredIds.poll();
+                if (deletedId == null) {
+                    call("register", random);
+                    return;
+                }
+                request.uri(URI.create(baseUrl + "/delete?id=" + deletedId)).GET();
+            }
+            case "get_users_by_dates" -> {
+                var from = FIRST_DATE_OF_BIRTH.plusDays(random.nextInt(DATE_OF_BIRTH_DAYS));
+                request.uri(URI.create(baseUrl + "/get_users_by_dates?from=" + from + "&to=" + from.plusDays(30))).GET();
+            }
+            default -> throw new IllegalArgumentException("Error. Incorrect endpoint: " + endpoint);
+        }
+
+        long start = System.nanoTime();
+        var response = send(request);
+        long latency = System.nanoTime() - start;
+        boolean success = response.statusCode() == 200;
+        stats.get(endpoint).record(latency, success);
+
+        if (success && endpoint.equals("register")) {
+            registeredIds.add(objectMapper.readTree(response.body()).get("id").asLong());
+        }
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpRequest.BodyPublisher json(Object body) throws IOException {
+        return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+    }
+
+    /**
+     * create user request body
+     *
+     * @param id    - user id, null for a new user
+     * @param email - user email
+     * @param day   - day of birth from the first date of birth
+     * @return user fields
+     */
+    private static Map<String, Object> createUser(Long id, String email, int day) {
+        var user = new LinkedHashMap<String, Object>();
+        user.put("id", id);
+        user.put("email", email);
+        user.put("firstName", "load");
+        user.put("lastName", "user");
+        user.put("dateOfBirth", FIRST_DATE_OF_BIRTH.plusDays(day % DATE_OF_BIRTH_DAYS).toString());
+        user.put("address", "address");
+        user.put("phoneNumber", "1234567890");
+        return user;
+    }
+
+    /**
+     * parse the mix to an array where every endpoint is repeated by its weight, so a random item of the array
+     * is a random endpoint of the mix
+     *
+     * @param mix - weights of endpoints, e.g. register=20,delete=10
+     * @return endpoints array
+     */
+    private String[] parseMix(String mix) {
+        var endpoints = new ArrayList<String>();
+        for (var item : mix.split(",")) {
+            var parts = item.trim().split("=");
+            var endpoint = parts[0].trim();
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight > 0) {
+                stats.putIfAbsent(endpoint, new EndpointStats(endpoint));
+                endpoints.addAll(Collections.nCopies(weight, endpoint));
+            }
+        }
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("Error. Incorrect mix: " + mix);
+        }
+        if (stats.containsKey("delete")) {
+            stats.putIfAbsent("register", new EndpointStats("register"));
+        }
+        return endpoints.toArray(String[]::new);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        var options = new HashMap<String, String>();
+        for (var arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Error. Incorrect option: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+}
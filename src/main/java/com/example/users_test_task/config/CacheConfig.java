@@ -0,0 +1,12 @@
+package com.example.users_test_task.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * cache configuration class. Caches are configured by spring.cache.* properties
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+}
@@ -0,0 +1,51 @@
+package com.example.users_test_task.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * excludes the db auto-configuration if users are kept in the memory storage, so the application starts
+ * without a DataSource, JPA and a connection to db. The exclusions are added to spring.autoconfigure.exclude
+ * set by the user
+ */
+public class MemoryStorageEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String EXCLUDE = "spring.autoconfigure.exclude";
+    private static final List<Class<?>> DB_AUTO_CONFIGURATIONS = List.of(
+            DataSourceAutoConfiguration.class,
+            DataSourceTransactionManagerAutoConfiguration.class,
+            JdbcTemplateAutoConfiguration.class,
+            HibernateJpaAutoConfiguration.class,
+            JpaRepositoriesAutoConfiguration.class
+    );
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!"memory".equals(environment.getProperty("users.storage"))) {
+            return;
+        }
+
+        var binder = Binder.get(environment);
+        var exclude = new ArrayList<>(binder.bind(EXCLUDE, Bindable.listOf(String.class)).orElse(List.of()));
+        for (var configuration : DB_AUTO_CONFIGURATIONS) {
+            if (!exclude.contains(configuration.getName())) {
+                exclude.add(configuration.getName());
+            }
+        }
+        environment.getPropertySources().addFirst(
+                new MapPropertySource("usersMemoryStorage", Map.of(EXCLUDE, String.join(",", exclude))));
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.users_test_task.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * metrics configuration class
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * aspect which records @Timed methods
+     *
+     * @param meterRegistry - meter registry
+     * @return timed aspect
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
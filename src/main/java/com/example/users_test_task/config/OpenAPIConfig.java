@@ -4,6 +4,7 @@ import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Contact;
 import io.swagger.v3.oas.models.info.Info;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
@@ -18,6 +19,7 @@ import java.io.InputStreamReader;
  * open API (swagger) configuration class
  */
 @Configuration
+@Slf4j
 @RequiredArgsConstructor
 public class OpenAPIConfig {
 
@@ -40,7 +42,7 @@ public class OpenAPIConfig {
         try {
             taskDescription = getTaskDescription("task_description.txt");
         } catch (IOException ex) {
-            ex.printStackTrace();
+            log.warn("Task description is not loaded", ex);
         }
 
         Info info = new Info()
@@ -0,0 +1,52 @@
+package com.example.users_test_task.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.annotation.EnableRetry;
+
+/**
+ * retry configuration class
+ */
+@Configuration
+@EnableRetry
+public class RetryConfig {
+
+    /**
+     * retry listener which counts failed attempts in users.retry.attempts metric
+     *
+     * @param meterRegistry - meter registry
+     * @return retry listener, it is applied to every @Retryable method
+     */
+    @Bean
+    public RetryListener retryMetricsListener(MeterRegistry meterRegistry) {
+        return new RetryListener() {
+            @Override
+            public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
+                                                         Throwable throwable) {
+                meterRegistry.counter("users.retry.attempts",
+                        "method", getMethodName(context),
+                        "exception", throwable.getClass().getSimpleName()
+                ).increment();
+            }
+        };
+    }
+
+    /**
+     * get short method name (Class.method) of the retry context
+     *
+     * @param context - retry context
+     * @return method name
+     */
+    private static String getMethodName(RetryContext context) {
+        var name = String.valueOf(context.getAttribute(RetryContext.NAME));
+        int end = name.indexOf('(');
+        name = end < 0 ? name : name.substring(0, end);
+        int method = name.lastIndexOf('.');
+        int type = method < 0 ? -1 : name.lastIndexOf('.', method - 1);
+        return name.substring(type + 1);
+    }
+}
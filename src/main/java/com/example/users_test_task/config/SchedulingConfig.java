@@ -0,0 +1,12 @@
+package com.example.users_test_task.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * scheduling configuration class
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,223 @@
+package com.example.users_test_task.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+import java.time.Duration;
+
+/**
+ * users properties from application.properties. They are validated when they are bound, so a wrong
+ * configuration fails on startup with the name of the property
+ */
+@Data
+@ConfigurationProperties(prefix = "users")
+public class UserProperties implements Validator {
+
+    /**
+     * min age of a user in years
+     */
+    private int minAge = 18;
+
+    /**
+     * user storage engine: jpa for the db or memory for a node-local storage without db
+     */
+    private String storage = "jpa";
+
+    private final Pagination pagination = new Pagination();
+    private final Validation validation = new Validation();
+    private final Stats stats = new Stats();
+    private final Export export = new Export();
+    private final Patch patch = new Patch();
+    private final RegisterQueue registerQueue = new RegisterQueue();
+
+    /**
+     * named importing because import is a keyword, it is bound as users.import by the getter
+     */
+    @Getter(AccessLevel.NONE)
+    private final Import importing = new Import();
+
+    public Import getImport() {
+        return importing;
+    }
+
+    /**
+     * check does the users are kept in the node-local memory storage
+     *
+     * @return true if users.storage is memory
+     */
+    public boolean isMemoryStorage() {
+        return "memory".equals(storage);
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return UserProperties.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        var properties = (UserProperties) target;
+        var queue = properties.getRegisterQueue();
+        if (!properties.isMemoryStorage() && queue.isEnabled() && queue.isJournalEnabled()
+                && !StringUtils.hasText(queue.getJournalDir())) {
+            errors.rejectValue("registerQueue.journalDir", "required", "users.register-queue.journal-dir is required " +
+                    "when the register queue is enabled, set it or set users.register-queue.journal-enabled=false");
+        }
+    }
+
+    /**
+     * pagination properties
+     */
+    @Data
+    public static class Pagination {
+
+        /**
+         * page size if the client did not send one
+         */
+        private int defaultSize = 100;
+
+        /**
+         * max page size the client can ask for
+         */
+        private int maxSize = 1000;
+    }
+
+    /**
+     * validation properties
+     */
+    @Data
+    public static class Validation {
+
+        /**
+         * validate users with the fast UserValidator, the generic validator is used only for unsupported users
+         */
+        private boolean fastPath = true;
+    }
+
+    /**
+     * statistics properties
+     */
+    @Data
+    public static class Stats {
+
+        /**
+         * keep counts of users by date of birth in memory and read statistics from them instead of db
+         */
+        private boolean summaryEnabled = false;
+    }
+
+    /**
+     * export properties
+     */
+    @Data
+    public static class Export {
+
+        /**
+         * count of rows the jdbc driver reads from the db cursor at once
+         */
+        private int fetchSize = 1000;
+    }
+
+    /**
+     * import properties
+     */
+    @Data
+    public static class Import {
+
+        /**
+         * count of rows validated and written at once
+         */
+        private int chunkSize = 10000;
+
+        /**
+         * write rows with PostgreSQL COPY if the db is PostgreSQL, otherwise with batched inserts
+         */
+        private boolean copyEnabled = true;
+
+        /**
+         * directory for uploaded files and rejection files
+         */
+        private String dir = System.getProperty("java.io.tmpdir") + "/users-import";
+
+        /**
+         * time the status and the rejection file of a finished import are kept, then the file is deleted
+         */
+        private Duration statusTtl = Duration.ofHours(1);
+    }
+
+    /**
+     * batch patch properties
+     */
+    @Data
+    public static class Patch {
+
+        /**
+         * count of patches applied and flushed in one transaction
+         */
+        private int chunkSize = 1000;
+    }
+
+    /**
+     * asynchronous register properties
+     */
+    @Data
+    public static class RegisterQueue {
+
+        /**
+         * accept users on /register_async and write them in the background
+         */
+        private boolean enabled = false;
+
+        /**
+         * max count of accepted users waiting for the write, new users are rejected with 429 if it is full
+         */
+        private int capacity = 10000;
+
+        /**
+         * max count of users written in one transaction
+         */
+        private int batchSize = 500;
+
+        /**
+         * max time a user waits in the queue for a batch to be filled
+         */
+        private Duration flushInterval = Duration.ofMillis(50);
+
+        /**
+         * first delay before a batch is written again after a db error, it is doubled on every retry
+         */
+        private Duration retryDelay = Duration.ofMillis(100);
+
+        /**
+         * max delay between retries of a batch
+         */
+        private Duration maxRetryDelay = Duration.ofSeconds(10);
+
+        /**
+         * time the result of a registration can be read after it is accepted
+         */
+        private Duration statusTtl = Duration.ofMinutes(10);
+
+        /**
+         * write accepted users to a local journal before the response, so they are written to db after a crash
+         */
+        private boolean journalEnabled = true;
+
+        /**
+         * directory of journal segment files, required if the queue and the journal are enabled. It should be on a durable
+         * local disk which is kept between restarts, not in a temporary directory
+         */
+        private String journalDir;
+
+        /**
+         * size of one journal segment file
+         */
+        private DataSize journalSegmentSize = DataSize.ofMegabytes(16);
+    }
+}
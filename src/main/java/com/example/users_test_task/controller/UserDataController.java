@@ -1,30 +1,60 @@
 package com.example.users_test_task.controller;
 
 import com.example.users_test_task.dto.UserDTO;
+import com.example.users_test_task.exception.InvalidRequestException;
+import com.example.users_test_task.exception.QueueFullException;
 import com.example.users_test_task.exception.ValidationException;
+import com.example.users_test_task.exception.VersionConflictException;
+import com.example.users_test_task.service.FileFormat;
+import com.example.users_test_task.service.UserExportService;
+import com.example.users_test_task.service.UserImportService;
+import com.example.users_test_task.service.UserPatchService;
+import com.example.users_test_task.service.UserRegisterQueue;
 import com.example.users_test_task.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * users data controller
  */
 @RestController
 @RequestMapping("/api/v1/users")
+@Slf4j
 @RequiredArgsConstructor
 @Tag(name = "User data controller", description = "Main controller with the ability to work with user data")
 public class UserDataController {
 
     private final UserService userService;
+    // services which write the db directly, they are not created with the memory storage
+    private final ObjectProvider<UserExportService> userExportService;
+    private final ObjectProvider<UserImportService> userImportService;
+    private final ObjectProvider<UserPatchService> userPatchService;
+    private final ObjectProvider<UserRegisterQueue> userRegisterQueue;
+    private final ObjectMapper objectMapper;
 
     /**
      * save user in db
@@ -48,27 +78,140 @@ public class UserDataController {
         }
     }
 
+    /**
+     * accept user for the background write
+     *
+     * @param userDTO - user data from client
+     * @return response entity with the tracking id
+     */
+    @Operation(summary = "Accept user for the background write")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "The user is valid and queued. Its result is in /register_status."),
+            @ApiResponse(responseCode = "403", description = "Error saving a user. Possibly incorrect values."),
+            @ApiResponse(responseCode = "429", description = "The queue is full. Repeat the request later.")
+    })
+    @PostMapping("/register_async")
+    public ResponseEntity<?> saveUserAsync(@RequestBody UserDTO userDTO) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(
+                    getDbService(userRegisterQueue, "asynchronous registration").submit(userDTO));
+        } catch (ValidationException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getViolations());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (QueueFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        }
+    }
+
+    /**
+     * get result of the background write
+     *
+     * @param id - tracking id
+     * @return response entity with the registration status
+     */
+    @Operation(summary = "Get result of the background write")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The registration status has been successfully retrieved."),
+            @ApiResponse(responseCode = "403", description = "Error when receiving the registration status. The id may be incorrect or expired.")
+    })
+    @GetMapping("/register_status")
+    public ResponseEntity<?> getRegisterStatus(@RequestParam(name = "id") String id) {
+        try {
+            return ResponseEntity.ok(getDbService(userRegisterQueue, "asynchronous registration").getStatus(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    /**
+     * save a list of users in db
+     *
+     * @param userDTOs - users data from client
+     * @return response entity with the result of every user
+     */
+    @Operation(summary = "Save a list of users")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The list is processed. Every item has its own result."),
+            @ApiResponse(responseCode = "403", description = "Error saving users. Possibly the list is empty.")
+    })
+    @PostMapping("/register_batch")
+    public ResponseEntity<?> saveUsers(@RequestBody List<UserDTO> userDTOs) {
+        try {
+            return ResponseEntity.ok(userService.saveAll(userDTOs));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    /**
+     * get user by id
+     *
+     * @param id - user id
+     * @return response entity with the user
+     */
+    @Operation(summary = "Get user")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The user has been successfully retrieved."),
+            @ApiResponse(responseCode = "403", description = "Error when receiving a user. The id may be incorrect.")
+    })
+    @GetMapping("/get_user")
+    public ResponseEntity<?> getUser(@RequestParam(name = "id") Long id) {
+        try {
+            var user = userService.getUser(id);
+            return ResponseEntity.ok().eTag(String.valueOf(user.getVersion())).body(user);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    /**
+     * get user by email
+     *
+     * @param email - user email
+     * @return response entity with the user
+     */
+    @Operation(summary = "Get user by email")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The user has been successfully retrieved."),
+            @ApiResponse(responseCode = "403", description = "Error when receiving a user. The email may be incorrect.")
+    })
+    @GetMapping("/get_user_by_email")
+    public ResponseEntity<?> getUserByEmail(@RequestParam(name = "email") String email) {
+        try {
+            return ResponseEntity.ok(userService.getUserByEmail(email));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
     /**
      * update user entity
      *
      * @param userDTO - new user data from client
+     * @param ifMatch - user version (ETag) known by the client, optional
      * @return response entity
      */
     @Operation(summary = "Update user")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "The user is successfully updated."),
-            @ApiResponse(responseCode = "403", description = "Error updating a user. Possibly incorrect values.")
+            @ApiResponse(responseCode = "403", description = "Error updating a user. Possibly incorrect values."),
+            @ApiResponse(responseCode = "409", description = "The user was changed after the version from If-Match.")
     })
     @PostMapping("/update")
-    public ResponseEntity<?> updateUser(@RequestBody UserDTO userDTO) {
+    public ResponseEntity<?> updateUser(@RequestBody UserDTO userDTO,
+                                        @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            return ResponseEntity.ok(userService.update(userDTO));
+            var user = userService.update(userDTO, parseVersion(ifMatch));
+            return ResponseEntity.ok().eTag(String.valueOf(user.getVersion())).body(user);
         } catch (ValidationException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getViolations());
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (VersionConflictException | OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error updating user {}", userDTO.getId(), e);
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
 
         }
@@ -77,22 +220,48 @@ public class UserDataController {
     /**
      * update some user fields
      *
-     * @param fields - new user fields
+     * @param fields  - new user fields
+     * @param ifMatch - user version (ETag) known by the client, optional
      * @return response entity
      */
     @Operation(summary = "Update user fields")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "The users fields is successfully updated."),
-            @ApiResponse(responseCode = "403", description = "Error updating users fields. Possibly incorrect values.")
+            @ApiResponse(responseCode = "403", description = "Error updating users fields. Possibly incorrect values."),
+            @ApiResponse(responseCode = "409", description = "The user was changed after the version from If-Match.")
     })
     @PostMapping("/update_fields")
-    public ResponseEntity<?> updateUserFields(@RequestBody LinkedHashMap<String, Object> fields) {
+    public ResponseEntity<?> updateUserFields(@RequestBody LinkedHashMap<String, Object> fields,
+                                              @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            return ResponseEntity.ok(userService.updateFields(fields));
+            var user = userService.updateFields(fields, parseVersion(ifMatch));
+            return ResponseEntity.ok().eTag(String.valueOf(user.getVersion())).body(user);
         } catch (ValidationException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getViolations());
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (VersionConflictException | OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    /**
+     * update fields of a list of users with JSON Merge Patch objects or JSON Patch arrays
+     *
+     * @param patches - items with id, optional version and patch
+     * @return response entity with the result of every item
+     */
+    @Operation(summary = "Update fields of a list of users")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The list is processed. Every item has its own result."),
+            @ApiResponse(responseCode = "403", description = "Error updating users. Possibly the list is empty.")
+    })
+    @PostMapping("/update_fields_batch")
+    public ResponseEntity<?> updateUsersFields(@RequestBody List<Map<String, Object>> patches) {
+        try {
+            return ResponseEntity.ok(getDbService(userPatchService, "batch patch").patchAll(patches));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
         }
     }
 
@@ -117,27 +286,328 @@ public class UserDataController {
         }
     }
 
+    /**
+     * delete users
+     *
+     * @param ids - users ids
+     * @return response entity with the count of deleted users
+     */
+    @Operation(summary = "Delete a list of users")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The users are successfully deleted."),
+            @ApiResponse(responseCode = "403", description = "Error deleting users. Possibly the list is empty.")
+    })
+    @PostMapping("/delete_batch")
+    public ResponseEntity<?> deleteUsers(@RequestBody List<Long> ids) {
+        try {
+            return ResponseEntity.ok("Users deleted: " + userService.deleteAll(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
     /**
      * get users by date of birth from @param from to @param to
      *
-     * @param from - from date
-     * @param to   - to date
+     * @param from   - from date
+     * @param to     - to date
+     * @param fields - comma separated fields to return, all the fields by default
      * @return a list of users
      */
     @Operation(summary = "Get a list of users between some dates")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "The list of users has been successfully retrieved."),
-            @ApiResponse(responseCode = "403", description = "Error when receiving a list of users. The dates may be incorrect.")
+            @ApiResponse(responseCode = "403", description = "Error when receiving a list of users. The dates or fields may be incorrect.")
     })
     @GetMapping("/get_users_by_dates")
     public ResponseEntity<?> getUsersByDates(
+            @RequestParam(name = "from") LocalDate from,
+            @RequestParam(name = "to") LocalDate to,
+            @RequestParam(name = "fields", required = false) String fields
+    ) {
+        try {
+            return ResponseEntity.ok(fields == null
+                    ? userService.getUsersByDates(from, to)
+                    : userService.getUsersByDates(from, to, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    /**
+     * count users by date of birth from @param from to @param to by age, year of birth or month of birth
+     *
+     * @param from       - from date
+     * @param to         - to date
+     * @param groupBy    - age, year or month
+     * @param bucketSize - size of age buckets in years
+     * @return counts of users by group
+     */
+    @Operation(summary = "Get counts of users between some dates by age, year or month of birth")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The statistics has been successfully retrieved."),
+            @ApiResponse(responseCode = "403", description = "Error when receiving the statistics. The dates or group may be incorrect.")
+    })
+    @GetMapping("/get_users_stats")
+    public ResponseEntity<?> getUsersStats(
+            @RequestParam(name = "from") LocalDate from,
+            @RequestParam(name = "to") LocalDate to,
+            @RequestParam(name = "group_by", defaultValue = "year") String groupBy,
+            @RequestParam(name = "bucket_size", required = false) Integer bucketSize
+    ) {
+        try {
+            return ResponseEntity.ok(userService.getUsersStats(from, to, groupBy, bucketSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    /**
+     * get a page of users by date of birth from @param from to @param to
+     *
+     * @param from      - from date
+     * @param to        - to date
+     * @param size      - page size
+     * @param pageToken - token of the next page from the previous response
+     * @param fields    - comma separated fields to return, all the fields by default
+     * @return a page of users with the next page token
+     */
+    @Operation(summary = "Get a page of users between some dates")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The page of users has been successfully retrieved."),
+            @ApiResponse(responseCode = "403", description = "Error when receiving a page of users. The dates, size, token or fields may be incorrect.")
+    })
+    @GetMapping("/get_users_by_dates_page")
+    public ResponseEntity<?> getUsersPageByDates(
+            @RequestParam(name = "from") LocalDate from,
+            @RequestParam(name = "to") LocalDate to,
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "page_token", required = false) String pageToken,
+            @RequestParam(name = "fields", required = false) String fields
+    ) {
+        try {
+            return ResponseEntity.ok(fields == null
+                    ? userService.getUsersPageByDates(from, to, size, pageToken)
+                    : userService.getUsersPageByDates(from, to, size, pageToken, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    /**
+     * get a page of users with birthday from @param from to @param to, the range can wrap around the year end
+     *
+     * @param from      - from month and day in MM-DD format
+     * @param to        - to month and day in MM-DD format, the same as from by default
+     * @param size      - page size
+     * @param pageToken - token of the next page from the previous response
+     * @return a page of users with the next page token
+     */
+    @Operation(summary = "Get a page of users with birthday between some month days")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The page of users has been successfully retrieved."),
+            @ApiResponse(responseCode = "403", description = "Error when receiving a page of users. The month days, size or token may be incorrect.")
+    })
+    @GetMapping("/get_users_by_birthday_page")
+    public ResponseEntity<?> getUsersPageByBirthday(
+            @RequestParam(name = "from") String from,
+            @RequestParam(name = "to", required = false) String to,
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "page_token", required = false) String pageToken
+    ) {
+        try {
+            return ResponseEntity.ok(userService.getUsersPageByBirthday(from, to, size, pageToken));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    /**
+     * stream users by date of birth from @param from to @param to as a json array
+     *
+     * @param from - from date
+     * @param to   - to date
+     * @return response entity with the streamed list of users
+     */
+    @Operation(summary = "Stream a list of users between some dates")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The list of users is streamed."),
+            @ApiResponse(responseCode = "403", description = "Error when receiving a list of users. The dates may be incorrect.")
+    })
+    @GetMapping("/get_users_by_dates_stream")
+    public ResponseEntity<StreamingResponseBody> streamUsersByDates(
             @RequestParam(name = "from") LocalDate from,
             @RequestParam(name = "to") LocalDate to
     ) {
         try {
-            return ResponseEntity.ok(userService.getUsersByDates(from, to));
+            userService.isDateRangeValid(from, to);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(outputStream -> outputStream.write(e.getMessage().getBytes(StandardCharsets.UTF_8)));
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (var generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                userService.streamUsersByDates(from, to, user -> {
+                    try {
+                        generator.writeObject(user);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * export all the users as a file in NDJSON or CSV format
+     *
+     * @param format - ndjson or csv
+     * @param gzip   - compress the file with gzip
+     * @return response entity with the streamed file
+     */
+    @Operation(summary = "Export all the users in NDJSON or CSV format")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The users are streamed."),
+            @ApiResponse(responseCode = "403", description = "Error when exporting users. The format may be incorrect.")
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestParam(name = "gzip", defaultValue = "false") boolean gzip
+    ) {
+        FileFormat exportFormat;
+        UserExportService exportService;
+        try {
+            exportFormat = FileFormat.of(format);
+            exportService = getDbService(userExportService, "export");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(outputStream -> outputStream.write(e.getMessage().getBytes(StandardCharsets.UTF_8)));
+        }
+
+        var fileName = "users." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = outputStream -> exportService.export(exportFormat, gzip, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    /**
+     * import users from a NDJSON or CSV file in the background
+     *
+     * @param format      - ndjson or csv
+     * @param inputStream - file in the request body
+     * @return response entity with the import status
+     */
+    @Operation(summary = "Import users from a NDJSON or CSV file")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "The file is uploaded and the import is started."),
+            @ApiResponse(responseCode = "403", description = "Error when uploading the file. The format may be incorrect.")
+    })
+    @PostMapping("/import")
+    public ResponseEntity<?> importUsers(
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            InputStream inputStream
+    ) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(
+                    getDbService(userImportService, "import").start(FileFormat.of(format), inputStream));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        } catch (IOException e) {
+            log.error("Import file is not uploaded", e);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error. The file is not uploaded");
+        }
+    }
+
+    /**
+     * get progress of the import
+     *
+     * @param id - import id
+     * @return response entity with the import status
+     */
+    @Operation(summary = "Get progress of the import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The import status has been successfully retrieved."),
+            @ApiResponse(responseCode = "403", description = "Error when receiving the import status. The id may be incorrect.")
+    })
+    @GetMapping("/import_status")
+    public ResponseEntity<?> getImportStatus(@RequestParam(name = "id") String id) {
+        try {
+            return ResponseEntity.ok(getDbService(userImportService, "import").getStatus(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+        }
+    }
+
+    /**
+     * get rejected rows of the import, one json object with the line number and violations per line
+     *
+     * @param id - import id
+     * @return response entity with the rejection file
+     */
+    @Operation(summary = "Get rejected rows of the import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The rejection file is retrieved."),
+            @ApiResponse(responseCode = "403", description = "Error when receiving the rejection file. The id may be incorrect.")
+    })
+    @GetMapping("/import_rejections")
+    public ResponseEntity<?> getImportRejections(@RequestParam(name = "id") String id) {
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(FileFormat.NDJSON.getContentType()))
+                    .body(new FileSystemResource(getDbService(userImportService, "import").getRejectionsFile(id)));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
         }
     }
+
+    /**
+     * get a service which writes the db directly
+     *
+     * @param service - service provider
+     * @param name    - name of the function for the error message
+     * @return service
+     * @throws IllegalArgumentException if users are kept in the memory storage, so there is no service
+     */
+    private static <T> T getDbService(ObjectProvider<T> service, String name) throws IllegalArgumentException {
+        var value = service.getIfAvailable();
+        if (value == null) {
+            throw new InvalidRequestException("Error. The " + name + " is not supported by the memory storage");
+        }
+        return value;
+    }
+
+    /**
+     * parse user version from the If-Match header value ("1", "\"1\"" or "W/\"1\"")
+     *
+     * @param ifMatch - header value, may be null
+     * @return user version or null if the header is empty
+     * @throws IllegalArgumentException if the header value is not a version
+     */
+    private Long parseVersion(String ifMatch) throws IllegalArgumentException {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return null;
+        }
+
+        var value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Error. Incorrect If-Match header: " + ifMatch);
+        }
+    }
 }
@@ -0,0 +1,14 @@
+package com.example.users_test_task.dto;
+
+/**
+ * progress of an import
+ *
+ * @param id       - import id
+ * @param status   - running, done or failed
+ * @param read     - count of read rows
+ * @param imported - count of saved users
+ * @param rejected - count of rejected rows, they are in the rejection file
+ * @param error    - error message if the import is failed
+ */
+public record ImportStatusDTO(String id, String status, long read, long imported, long rejected, String error) {
+}
@@ -0,0 +1,16 @@
+package com.example.users_test_task.dto;
+
+import com.example.users_test_task.service.Violation;
+
+import java.util.List;
+
+/**
+ * result of an asynchronous registration
+ *
+ * @param id         - tracking id
+ * @param status     - queued, saved or rejected
+ * @param userId     - id of the saved user
+ * @param violations - violations if the user is rejected by db
+ */
+public record RegisterStatusDTO(String id, String status, Long userId, List<Violation> violations) {
+}
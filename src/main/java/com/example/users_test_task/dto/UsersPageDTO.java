@@ -0,0 +1,13 @@
+package com.example.users_test_task.dto;
+
+import java.util.List;
+
+/**
+ * one page of users
+ *
+ * @param users         - users on the page, entities or maps of the selected fields
+ * @param nextPageToken - token to get the next page, null if this page is the last
+ * @param <T>           - type of users on the page
+ */
+public record UsersPageDTO<T>(List<T> users, String nextPageToken) {
+}
@@ -0,0 +1,13 @@
+package com.example.users_test_task.dto;
+
+import java.util.Map;
+
+/**
+ * counts of users by some group
+ *
+ * @param groupBy - group name: age, year or month
+ * @param counts  - count of users by group key ordered by key. For age the key is the first age of the bucket
+ * @param total   - count of all users
+ */
+public record UsersStatsDTO(String groupBy, Map<Integer, Long> counts, long total) {
+}
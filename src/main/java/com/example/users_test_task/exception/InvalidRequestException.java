@@ -0,0 +1,17 @@
+package com.example.users_test_task.exception;
+
+/**
+ * exception for incorrect client requests, e.g. unknown id or incorrect params. It has no stack trace,
+ * because it is only mapped to the error response
+ */
+public class InvalidRequestException extends IllegalArgumentException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    @Override
+    public Throwable fillInStackTrace() {
+        return this;
+    }
+}
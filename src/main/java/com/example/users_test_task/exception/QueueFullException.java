@@ -0,0 +1,12 @@
+package com.example.users_test_task.exception;
+
+/**
+ * exception if a background queue can not accept more work now, the client should repeat the request later.
+ * It has no stack trace
+ */
+public class QueueFullException extends RuntimeException {
+
+    public QueueFullException(String message) {
+        super(message, null, false, false);
+    }
+}
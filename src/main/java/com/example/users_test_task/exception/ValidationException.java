@@ -2,16 +2,19 @@ package com.example.users_test_task.exception;
 
 import com.example.users_test_task.service.Violation;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 
 import java.util.List;
 
 /**
- * validation exception class
+ * validation exception class. It has no stack trace, it only carries the violations to the response
  */
 @Getter
-@RequiredArgsConstructor
 public class ValidationException extends Exception {
 
     private final List<Violation> violations;
+
+    public ValidationException(List<Violation> violations) {
+        super(null, null, false, false);
+        this.violations = violations;
+    }
 }
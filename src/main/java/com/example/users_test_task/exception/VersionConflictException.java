@@ -0,0 +1,12 @@
+package com.example.users_test_task.exception;
+
+/**
+ * exception if the user version from the client does not match the version in db. It has no stack trace
+ */
+public class VersionConflictException extends RuntimeException {
+
+    public VersionConflictException() {
+        super("Error. The user was changed by another request. Get the user again and repeat the update",
+                null, false, false);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.users_test_task.listener;
+
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.service.EmailIndex;
+import com.example.users_test_task.service.UserCache;
+import com.example.users_test_task.service.UserStatsSummary;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * user entity listener to keep node-local user data in sync with db writes.
+ * Dependencies are resolved lazily, because the listener is created together with the entity manager factory
+ */
+@RequiredArgsConstructor
+public class UserEntityListener {
+
+    private final ObjectProvider<EmailIndex> emailIndex;
+    private final ObjectProvider<UserCache> userCache;
+    private final ObjectProvider<UserStatsSummary> userStatsSummary;
+
+    /**
+     * add email of the user to the email index before it is written, so the index knows it
+     * even if the insert is not flushed yet
+     *
+     * @param user - user to save
+     */
+    @PrePersist
+    @PreUpdate
+    public void beforeSave(User user) {
+        emailIndex.ifAvailable(index -> index.add(user.getEmail()));
+    }
+
+    /**
+     * add the inserted user to the statistics summary
+     *
+     * @param user - inserted user
+     */
+    @PostPersist
+    public void afterPersist(User user) {
+        userStatsSummary.ifAvailable(summary -> summary.put(user.getId(), user.getDateOfBirth()));
+    }
+
+    /**
+     * evict the updated user from the cache and update it in the statistics summary
+     *
+     * @param user - updated user
+     */
+    @PostUpdate
+    public void afterUpdate(User user) {
+        userCache.ifAvailable(cache -> cache.evict(user.getId()));
+        userStatsSummary.ifAvailable(summary -> summary.put(user.getId(), user.getDateOfBirth()));
+    }
+
+    /**
+     * remove email of the deleted user from the email index, evict the user from the cache
+     * and remove it from the statistics summary
+     *
+     * @param user - deleted user
+     */
+    @PostRemove
+    public void afterRemove(User user) {
+        emailIndex.ifAvailable(index -> index.remove(user.getEmail()));
+        userCache.ifAvailable(cache -> cache.evict(user.getId()));
+        userStatsSummary.ifAvailable(summary -> summary.remove(user.getId()));
+    }
+}
@@ -3,6 +3,7 @@ package com.example.users_test_task.mapper;
 import com.example.users_test_task.dto.UserDTO;
 import com.example.users_test_task.model.User;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 /**
  * user entity mapper
@@ -15,5 +16,7 @@ public interface UserMapper {
      * @param userDTO - userDTO class
      * @return user class
      */
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "birthMonthDay", ignore = true)
     User toUser(UserDTO userDTO);
 }
@@ -1,11 +1,16 @@
 package com.example.users_test_task.model;
 
+import com.example.users_test_task.listener.UserEntityListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Past;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 
@@ -14,30 +19,84 @@ import java.time.LocalDate;
  */
 @Data
 @Entity(name = "users")
+@EntityListeners(UserEntityListener.class)
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_date_of_birth_id", columnList = "date_of_birth, id"),
+        @Index(name = "idx_users_birth_month_day_id", columnList = "birth_month_day, id")
+})
 public class User {
+
+    /**
+     * count of ids taken from users_seq at once
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /**
+     * max length of the text columns
+     */
+    public static final int MAX_TEXT_LENGTH = 255;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @NotBlank(message = "Error. Email is required")
     @Email(message = "Error. Email should be valid")
+    @Size(max = MAX_TEXT_LENGTH, message = "Error. Email should be at most 255 characters")
     @Column(unique = true)
     private String email;
 
     @NotBlank(message = "Error. First name is required")
+    @Size(max = MAX_TEXT_LENGTH, message = "Error. First name should be at most 255 characters")
     private String firstName;
 
     @NotBlank(message = "Error. Last name is required")
+    @Size(max = MAX_TEXT_LENGTH, message = "Error. Last name should be at most 255 characters")
     private String lastName;
 
     @Past(message = "Error. Date of birth should be in the past")
     private LocalDate dateOfBirth;
 
+    /**
+     * month and day of the date of birth as month * 100 + day, e.g. 1231 for December 31.
+     * It is derived from the date of birth to find birthdays by the index
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Integer birthMonthDay;
+
+    @Size(max = MAX_TEXT_LENGTH, message = "Error. Address should be at most 255 characters")
     private String address;
 
     @Pattern(regexp = "^(?:.{0}|\\d{10})$", message = "Error. Phone number should be empty or contain exactly 10 digits")
     private String phoneNumber;
 
+    @Version
+    @ColumnDefault("0")
+    @EqualsAndHashCode.Exclude
+    private Long version;
+
+    /**
+     * set the date of birth and the derived month and day
+     *
+     * @param dateOfBirth - date of birth
+     */
+    public void setDateOfBirth(LocalDate dateOfBirth) {
+        this.dateOfBirth = dateOfBirth;
+        this.birthMonthDay = toMonthDay(dateOfBirth);
+    }
+
+    /**
+     * get month and day of the date as month * 100 + day
+     *
+     * @param date - date
+     * @return month and day, null if the date is null
+     */
+    public static Integer toMonthDay(LocalDate date) {
+        return date == null ? null : date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
     /**
      * copy values from another class
      *
@@ -49,7 +108,9 @@ public class User {
         this.firstName = user.getFirstName();
         this.lastName = user.getLastName();
         this.dateOfBirth = user.getDateOfBirth();
+        this.birthMonthDay = user.getBirthMonthDay();
         this.address = user.getAddress();
         this.phoneNumber = user.getPhoneNumber();
+        this.version = user.getVersion();
     }
 }
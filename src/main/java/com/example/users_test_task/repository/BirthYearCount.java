@@ -0,0 +1,11 @@
+package com.example.users_test_task.repository;
+
+/**
+ * count of users born in some year
+ *
+ * @param year           - year of birth
+ * @param count          - count of users
+ * @param laterBirthdays - count of users whose birthday is after the month and day of the age cutoff
+ */
+public record BirthYearCount(Integer year, Long count, Long laterBirthdays) {
+}
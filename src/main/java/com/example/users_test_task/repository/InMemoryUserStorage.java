@@ -0,0 +1,362 @@
+package com.example.users_test_task.repository;
+
+import com.example.users_test_task.listener.UserEntityListener;
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.service.AgeCutoff;
+import com.example.users_test_task.service.EmailIndex;
+import com.example.users_test_task.service.StatsGroup;
+import com.example.users_test_task.service.UserCache;
+import com.example.users_test_task.service.UserStatsSummary;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * node-local user storage without db. Users are kept in concurrent hash maps by id and by email and in
+ * concurrent skip lists by date of birth and id and by month and day of birth and id, so range queries
+ * and keyset pages do not scan all the users.
+ * Stored users are immutable copies: a write replaces the copy in all the maps under one lock,
+ * reads do not take the lock. Writes are not part of db transactions and are lost on restart.
+ * The same listener as for db entities is called on insert and delete, so the email index, the cache
+ * and the statistics summary see the saved and the deleted users
+ */
+@Component
+@ConditionalOnProperty(prefix = "users", name = "storage", havingValue = "memory")
+public class InMemoryUserStorage implements UserStorage {
+
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<DateKey, User> usersByDateOfBirth = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<MonthDayKey, User> usersByBirthMonthDay = new ConcurrentSkipListMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final UserEntityListener listener;
+    private final AgeCutoff ageCutoff;
+
+    public InMemoryUserStorage(ObjectProvider<EmailIndex> emailIndex, ObjectProvider<UserCache> userCache,
+                               ObjectProvider<UserStatsSummary> userStatsSummary, AgeCutoff ageCutoff) {
+        this.ageCutoff = ageCutoff;
+        this.listener = new UserEntityListener(emailIndex, userCache, userStatsSummary);
+    }
+
+    @Override
+    public synchronized User save(User user) {
+        var previous = user.getId() == null ? null : users.get(user.getId());
+        if (previous != null && !Objects.equals(previous.getVersion(), user.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+        }
+        checkEmail(user.getEmail(), user.getId());
+
+        listener.beforeSave(user);
+        if (user.getId() == null) {
+            user.setId(ids.incrementAndGet());
+        } else {
+            ids.accumulateAndGet(user.getId(), Math::max);
+        }
+        user.setVersion(previous == null ? Long.valueOf(0) : previous.getVersion() + 1);
+        put(copyOf(user), previous);
+
+        if (previous == null) {
+            listener.afterPersist(user);
+        } else {
+            listener.afterUpdate(user);
+        }
+        return user;
+    }
+
+    @Override
+    public synchronized List<User> saveAll(List<User> users) {
+        var emails = new HashSet<String>();
+        for (var user : users) {
+            if (!emails.add(user.getEmail())) {
+                throw new DuplicateKeyException("Error. Duplicate email: " + user.getEmail());
+            }
+            checkEmail(user.getEmail(), user.getId());
+        }
+
+        for (var user : users) {
+            save(user);
+        }
+        return users;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(users.get(id)).map(InMemoryUserStorage::copyOf);
+    }
+
+    @Override
+    public Optional<User> findUserByEmail(String email) {
+        return email == null ? Optional.empty() : findById(idsByEmail.get(email));
+    }
+
+    @Override
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        var existing = new HashSet<String>();
+        for (var email : emails) {
+            if (email != null && idsByEmail.containsKey(email)) {
+                existing.add(email);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public List<User> getUsersByDateOfBirthBetween(LocalDate from, LocalDate to) {
+        return copyOf(usersByDateOfBirth.subMap(
+                new DateKey(from, Long.MIN_VALUE), true, new DateKey(to, Long.MAX_VALUE), true
+        ).values(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<User> getUsersPageByDateOfBirthBetween(LocalDate from, LocalDate to, LocalDate afterDate, Long afterId,
+                                                       int limit) {
+        var start = new DateKey(from, Long.MIN_VALUE);
+        var after = new DateKey(afterDate, afterId);
+        var range = after.compareTo(start) < 0
+                ? usersByDateOfBirth.subMap(start, true, new DateKey(to, Long.MAX_VALUE), true)
+                : usersByDateOfBirth.subMap(after, false, new DateKey(to, Long.MAX_VALUE), true);
+        return copyOf(range.values(), limit);
+    }
+
+    @Override
+    public List<Map<String, Object>> getUserFieldsByDateOfBirthBetween(List<String> fields, LocalDate from, LocalDate to,
+                                                                       LocalDate afterDate, Long afterId, Integer limit) {
+        var users = getUsersPageByDateOfBirthBetween(from, to,
+                afterDate == null ? from.minusDays(1) : afterDate, afterId == null ? Long.MIN_VALUE : afterId,
+                limit == null ? Integer.MAX_VALUE : limit);
+        var rows = new ArrayList<Map<String, Object>>(users.size());
+        for (var user : users) {
+            var row = new LinkedHashMap<String, Object>(fields.size() * 2);
+            for (var field : fields) {
+                row.put(field, getField(user, field));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public Stream<User> streamUsersByDateOfBirthBetween(LocalDate from, LocalDate to) {
+        return usersByDateOfBirth.subMap(
+                new DateKey(from, Long.MIN_VALUE), true, new DateKey(to, Long.MAX_VALUE), true
+        ).values().stream().map(InMemoryUserStorage::copyOf);
+    }
+
+    @Override
+    public List<KeyCount> countUsers(LocalDate from, LocalDate to, StatsGroup group) {
+        var counts = new TreeMap<Integer, Long>();
+        for (var key : usersByDateOfBirth.subMap(
+                new DateKey(from, Long.MIN_VALUE), true, new DateKey(to, Long.MAX_VALUE), true).keySet()) {
+            counts.merge(group.getKey(key.date(), ageCutoff), 1L, Long::sum);
+        }
+        return counts.entrySet().stream().map(count -> new KeyCount(count.getKey(), count.getValue())).toList();
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return idsByEmail.keySet().stream();
+    }
+
+    @Override
+    public Stream<UserDateOfBirth> streamAllDatesOfBirth() {
+        return users.values().stream().map(user -> new UserDateOfBirth(user.getId(), user.getDateOfBirth()));
+    }
+
+    @Override
+    public List<User> getUsersPageByBirthMonthDayBetween(int from, int to, int afterMonthDay, Long afterId, int limit) {
+        var start = new MonthDayKey(from, Long.MIN_VALUE);
+        var after = new MonthDayKey(afterMonthDay, afterId);
+        var end = new MonthDayKey(to, Long.MAX_VALUE);
+        var range = after.compareTo(start) < 0
+                ? usersByBirthMonthDay.subMap(start, true, end, true)
+                : usersByBirthMonthDay.subMap(after, false, end, true);
+        return copyOf(range.values(), limit);
+    }
+
+    @Override
+    public int fillBirthMonthDays() {
+        // the month and day of birth is set together with the date of birth
+        return 0;
+    }
+
+    @Override
+    public synchronized int updateUserFields(Long id, Long version, Map<String, Object> fields) {
+        var previous = id == null ? null : users.get(id);
+        if (previous == null || !Objects.equals(previous.getVersion(), version)) {
+            return 0;
+        }
+
+        var user = copyOf(previous);
+        for (var field : fields.entrySet()) {
+            var value = field.getValue();
+            switch (field.getKey()) {
+                case "email" -> user.setEmail((String) value);
+                case "firstName" -> user.setFirstName((String) value);
+                case "lastName" -> user.setLastName((String) value);
+                case "dateOfBirth" -> user.setDateOfBirth((LocalDate) value);
+                case "birthMonthDay" -> user.setBirthMonthDay((Integer) value);
+                case "address" -> user.setAddress((String) value);
+                case "phoneNumber" -> user.setPhoneNumber((String) value);
+                default -> throw new IllegalArgumentException("Unknown user field: " + field.getKey());
+            }
+        }
+        checkEmail(user.getEmail(), id);
+
+        user.setVersion(version == null ? 1 : version + 1);
+        put(user, previous);
+        return 1;
+    }
+
+    @Override
+    public synchronized int deleteById(Long id) {
+        var previous = id == null ? null : users.remove(id);
+        if (previous == null) {
+            return 0;
+        }
+
+        idsByEmail.remove(previous.getEmail(), id);
+        if (previous.getDateOfBirth() != null) {
+            usersByDateOfBirth.remove(new DateKey(previous.getDateOfBirth(), id));
+        }
+        if (previous.getBirthMonthDay() != null) {
+            usersByBirthMonthDay.remove(new MonthDayKey(previous.getBirthMonthDay(), id));
+        }
+        listener.afterRemove(previous);
+        return 1;
+    }
+
+    @Override
+    public synchronized int deleteAllByIdIn(Collection<Long> ids) {
+        int deleted = 0;
+        for (var id : ids) {
+            deleted += deleteById(id);
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized void deleteAllByEmail(String email) {
+        if (email != null) {
+            deleteById(idsByEmail.get(email));
+        }
+    }
+
+    /**
+     * check does the email is not used by another user, like the unique constraint in db
+     *
+     * @param email - email
+     * @param id    - id of the user with this email, null for a new user
+     * @throws DuplicateKeyException if the email is used
+     */
+    private void checkEmail(String email, Long id) throws DuplicateKeyException {
+        var usedBy = email == null ? null : idsByEmail.get(email);
+        if (usedBy != null && !usedBy.equals(id)) {
+            throw new DuplicateKeyException("Error. Duplicate email: " + email);
+        }
+    }
+
+    /**
+     * replace the stored user in all the maps
+     *
+     * @param user     - new copy of the user
+     * @param previous - previous copy of the user, null for a new user
+     */
+    private void put(User user, User previous) {
+        users.put(user.getId(), user);
+        if (previous != null) {
+            idsByEmail.remove(previous.getEmail(), previous.getId());
+            if (previous.getDateOfBirth() != null) {
+                usersByDateOfBirth.remove(new DateKey(previous.getDateOfBirth(), previous.getId()));
+            }
+            if (previous.getBirthMonthDay() != null) {
+                usersByBirthMonthDay.remove(new MonthDayKey(previous.getBirthMonthDay(), previous.getId()));
+            }
+        }
+        if (user.getEmail() != null) {
+            idsByEmail.put(user.getEmail(), user.getId());
+        }
+        if (user.getDateOfBirth() != null) {
+            usersByDateOfBirth.put(new DateKey(user.getDateOfBirth(), user.getId()), user);
+        }
+        if (user.getBirthMonthDay() != null) {
+            usersByBirthMonthDay.put(new MonthDayKey(user.getBirthMonthDay(), user.getId()), user);
+        }
+    }
+
+    /**
+     * get the value of a selectable field
+     *
+     * @param user  - user
+     * @param field - field name from UserFieldsRepository.FIELDS
+     * @return field value
+     */
+    private static Object getField(User user, String field) {
+        return switch (field) {
+            case "id" -> user.getId();
+            case "email" -> user.getEmail();
+            case "firstName" -> user.getFirstName();
+            case "lastName" -> user.getLastName();
+            case "dateOfBirth" -> user.getDateOfBirth();
+            case "address" -> user.getAddress();
+            case "phoneNumber" -> user.getPhoneNumber();
+            case "version" -> user.getVersion();
+            default -> throw new IllegalArgumentException("Unknown user field: " + field);
+        };
+    }
+
+    private static User copyOf(User user) {
+        var copy = new User();
+        copy.copy(user);
+        return copy;
+    }
+
+    private static List<User> copyOf(Collection<User> users, int limit) {
+        var copies = new ArrayList<User>();
+        for (var user : users) {
+            if (copies.size() >= limit) {
+                break;
+            }
+            copies.add(copyOf(user));
+        }
+        return copies;
+    }
+
+    /**
+     * key of the date of birth index, users with the same date of birth are ordered by id
+     *
+     * @param date - date of birth
+     * @param id   - user id
+     */
+    private record DateKey(LocalDate date, long id) implements Comparable<DateKey> {
+
+        @Override
+        public int compareTo(DateKey other) {
+            int result = date.compareTo(other.date);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+
+    /**
+     * key of the month and day of birth index, users with the same month and day of birth are ordered by id
+     *
+     * @param monthDay - month and day of birth as month * 100 + day
+     * @param id       - user id
+     */
+    private record MonthDayKey(int monthDay, long id) implements Comparable<MonthDayKey> {
+
+        @Override
+        public int compareTo(MonthDayKey other) {
+            int result = Integer.compare(monthDay, other.monthDay);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
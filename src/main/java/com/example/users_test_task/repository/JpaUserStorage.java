@@ -0,0 +1,155 @@
+package com.example.users_test_task.repository;
+
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.service.AgeCutoff;
+import com.example.users_test_task.service.StatsGroup;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * user storage in db with the user repository. Inserts are flushed at once, so a used email is reported
+ * by the save call and not by the commit
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "users", name = "storage", havingValue = "jpa", matchIfMissing = true)
+public class JpaUserStorage implements UserStorage {
+
+    private final UserRepository userRepository;
+    private final AgeCutoff ageCutoff;
+    private final EntityManager entityManager;
+
+    @Override
+    public User save(User user) {
+        return userRepository.saveAndFlush(user);
+    }
+
+    @Override
+    public List<User> saveAll(List<User> users) {
+        return userRepository.saveAllAndFlush(users);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return userRepository.findById(id);
+    }
+
+    @Override
+    public Optional<User> findUserByEmail(String email) {
+        return userRepository.findUserByEmail(email);
+    }
+
+    @Override
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        return userRepository.findExistingEmails(emails);
+    }
+
+    @Override
+    public List<User> getUsersByDateOfBirthBetween(LocalDate from, LocalDate to) {
+        return userRepository.getUsersByDateOfBirthBetween(from, to);
+    }
+
+    @Override
+    public List<User> getUsersPageByDateOfBirthBetween(LocalDate from, LocalDate to, LocalDate afterDate, Long afterId,
+                                                       int limit) {
+        return userRepository.getUsersPageByDateOfBirthBetween(from, to, afterDate, afterId, PageRequest.ofSize(limit));
+    }
+
+    @Override
+    public List<Map<String, Object>> getUserFieldsByDateOfBirthBetween(List<String> fields, LocalDate from, LocalDate to,
+                                                                       LocalDate afterDate, Long afterId, Integer limit) {
+        return userRepository.getUserFieldsByDateOfBirthBetween(fields, from, to, afterDate, afterId, limit);
+    }
+
+    @Override
+    public Stream<User> streamUsersByDateOfBirthBetween(LocalDate from, LocalDate to) {
+        // users are detached as they are read, so the persistence context does not keep all of them
+        return userRepository.streamUsersByDateOfBirthBetween(from, to).map(user -> {
+            entityManager.detach(user);
+            return user;
+        });
+    }
+
+    @Override
+    public List<KeyCount> countUsers(LocalDate from, LocalDate to, StatsGroup group) {
+        return switch (group) {
+            case AGE -> countUsersByAge(from, to);
+            case YEAR -> userRepository.countUsersByBirthYear(from, to);
+            case MONTH -> userRepository.countUsersByBirthMonth(from, to);
+        };
+    }
+
+    /**
+     * count users by age. The db counts users by year of birth and the users of every year whose birthday is
+     * after the cutoff month and day, so the ages come from the same cutoff as the min age check
+     *
+     * @param from - from date
+     * @param to   - to date
+     * @return a list of ages with counts ordered by age
+     */
+    private List<KeyCount> countUsersByAge(LocalDate from, LocalDate to) {
+        var counts = new TreeMap<Integer, Long>();
+        for (var year : userRepository.countUsersByBirthYearAndBirthday(from, to, ageCutoff.getCutoffMonthDay())) {
+            long laterBirthdays = year.laterBirthdays() == null ? 0 : year.laterBirthdays();
+            if (year.count() > laterBirthdays) {
+                counts.merge(ageCutoff.getAge(year.year(), false), year.count() - laterBirthdays, Long::sum);
+            }
+            if (laterBirthdays > 0) {
+                counts.merge(ageCutoff.getAge(year.year(), true), laterBirthdays, Long::sum);
+            }
+        }
+        return counts.entrySet().stream().map(count -> new KeyCount(count.getKey(), count.getValue())).toList();
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return userRepository.streamAllEmails();
+    }
+
+    @Override
+    public Stream<UserDateOfBirth> streamAllDatesOfBirth() {
+        return userRepository.streamAllDatesOfBirth();
+    }
+
+    @Override
+    public List<User> getUsersPageByBirthMonthDayBetween(int from, int to, int afterMonthDay, Long afterId, int limit) {
+        return userRepository.getUsersPageByBirthMonthDayBetween(from, to, afterMonthDay, afterId, PageRequest.ofSize(limit));
+    }
+
+    @Override
+    public int fillBirthMonthDays() {
+        return userRepository.fillBirthMonthDays();
+    }
+
+    @Override
+    public int updateUserFields(Long id, Long version, Map<String, Object> fields) {
+        return userRepository.updateUserFields(id, version, fields);
+    }
+
+    @Override
+    public int deleteById(Long id) {
+        return userRepository.deleteUserById(id);
+    }
+
+    @Override
+    public int deleteAllByIdIn(Collection<Long> ids) {
+        return userRepository.deleteUsersByIdIn(ids);
+    }
+
+    @Override
+    public void deleteAllByEmail(String email) {
+        userRepository.deleteAllByEmail(email);
+    }
+}
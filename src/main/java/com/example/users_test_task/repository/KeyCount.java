@@ -0,0 +1,10 @@
+package com.example.users_test_task.repository;
+
+/**
+ * count of users with some key, e.g. birth year
+ *
+ * @param key   - key value
+ * @param count - count of users
+ */
+public record KeyCount(Integer key, Long count) {
+}
@@ -0,0 +1,12 @@
+package com.example.users_test_task.repository;
+
+import java.time.LocalDate;
+
+/**
+ * user id with date of birth
+ *
+ * @param id          - user id
+ * @param dateOfBirth - user date of birth
+ */
+public record UserDateOfBirth(Long id, LocalDate dateOfBirth) {
+}
@@ -0,0 +1,54 @@
+package com.example.users_test_task.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * repository fragment for reading and writing only some fields of users. Rows are selected as tuples and updated
+ * with one statement or one JDBC batch, so no user entities are created and nothing is kept in the persistence context
+ */
+public interface UserFieldsRepository {
+
+    /**
+     * fields which can be selected
+     */
+    List<String> FIELDS = List.of("id", "email", "firstName", "lastName", "dateOfBirth", "address", "phoneNumber", "version");
+
+    /**
+     * get fields of users with date of birth from @param from to @param to after the last user of the previous page
+     *
+     * @param fields    - selected fields
+     * @param from      - from date
+     * @param to        - to date
+     * @param afterDate - date of birth of the last user on the previous page, null to start from the first user
+     * @param afterId   - id of the last user on the previous page
+     * @param limit     - max count of users, null for all the users
+     * @return a list of field values by field name ordered by date of birth and id
+     */
+    List<Map<String, Object>> getUserFieldsByDateOfBirthBetween(List<String> fields, LocalDate from, LocalDate to,
+                                                                LocalDate afterDate, Long afterId, Integer limit);
+
+    /**
+     * update only the given fields of the user and increment its version, if the version is not changed yet.
+     * Entity listeners are not called
+     *
+     * @param id      - user id
+     * @param version - current version of the user
+     * @param fields  - new values by field name
+     * @return count of updated users, 0 if there is no user with this id and version
+     */
+    int updateUserFields(Long id, Long version, Map<String, Object> fields);
+
+    /**
+     * update the same fields of many users with one JDBC batch of versioned UPDATE statements and increment
+     * their versions. A user whose version is changed is not updated. Entity listeners are not called
+     *
+     * @param fields  - names of the updated fields, every update has values of these fields
+     * @param updates - ids, current versions and new values of the users
+     * @return count of updated rows for every update in the order of updates, 0 if there is no user
+     * with this id and version
+     * @throws IllegalArgumentException if a field can not be updated
+     */
+    int[] updateUsersFields(List<String> fields, List<UserFieldsUpdate> updates) throws IllegalArgumentException;
+}
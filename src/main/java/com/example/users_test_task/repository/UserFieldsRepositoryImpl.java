@@ -0,0 +1,128 @@
+package com.example.users_test_task.repository;
+
+import com.example.users_test_task.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * criteria implementation of UserFieldsRepository, batched updates are sent with JdbcTemplate
+ */
+@RequiredArgsConstructor
+public class UserFieldsRepositoryImpl implements UserFieldsRepository {
+
+    /**
+     * columns of the fields which can be updated
+     */
+    private static final Map<String, String> COLUMNS = Map.of(
+            "email", "email",
+            "firstName", "first_name",
+            "lastName", "last_name",
+            "dateOfBirth", "date_of_birth",
+            "birthMonthDay", "birth_month_day",
+            "address", "address",
+            "phoneNumber", "phone_number"
+    );
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Map<String, Object>> getUserFieldsByDateOfBirthBetween(List<String> fields, LocalDate from, LocalDate to,
+                                                                       LocalDate afterDate, Long afterId, Integer limit) {
+        var builder = entityManager.getCriteriaBuilder();
+        var query = builder.createTupleQuery();
+        var user = query.from(User.class);
+        Path<LocalDate> dateOfBirth = user.get("dateOfBirth");
+        Path<Long> id = user.get("id");
+
+        query.multiselect(fields.stream().<Selection<?>>map(field -> user.get(field).alias(field)).toList());
+
+        Predicate where = builder.between(dateOfBirth, from, to);
+        if (afterDate != null) {
+            where = builder.and(where, builder.or(
+                    builder.greaterThan(dateOfBirth, afterDate),
+                    builder.and(builder.equal(dateOfBirth, afterDate), builder.greaterThan(id, afterId))
+            ));
+        }
+        query.where(where).orderBy(builder.asc(dateOfBirth), builder.asc(id));
+
+        var typedQuery = entityManager.createQuery(query);
+        if (limit != null) {
+            typedQuery.setMaxResults(limit);
+        }
+
+        var rows = new ArrayList<Map<String, Object>>();
+        for (var tuple : typedQuery.getResultList()) {
+            var row = new LinkedHashMap<String, Object>(fields.size() * 2);
+            for (var field : fields) {
+                row.put(field, tuple.get(field));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    @Transactional
+    public int updateUserFields(Long id, Long version, Map<String, Object> fields) {
+        var builder = entityManager.getCriteriaBuilder();
+        var update = builder.createCriteriaUpdate(User.class);
+        var user = update.from(User.class);
+        Path<Long> versionPath = user.get("version");
+
+        for (var field : fields.entrySet()) {
+            var value = field.getValue() == null
+                    ? builder.nullLiteral(user.get(field.getKey()).getJavaType())
+                    : field.getValue();
+            update.set(field.getKey(), value);
+        }
+        update.set(versionPath, builder.sum(builder.coalesce(versionPath, 0L), 1L));
+        update.where(
+                builder.equal(user.get("id"), id),
+                version == null ? builder.isNull(versionPath) : builder.equal(versionPath, version)
+        );
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public int[] updateUsersFields(List<String> fields, List<UserFieldsUpdate> updates) throws IllegalArgumentException {
+        if (updates.isEmpty()) {
+            return new int[0];
+        }
+
+        var sql = new StringBuilder("update users set ");
+        for (var field : fields) {
+            var column = COLUMNS.get(field);
+            if (column == null) {
+                throw new IllegalArgumentException("Unknown user field: " + field);
+            }
+            sql.append(column).append(" = ?, ");
+        }
+        sql.append("version = coalesce(version, 0) + 1 where id = ? and version is not distinct from ?");
+
+        var args = new ArrayList<Object[]>(updates.size());
+        for (var update : updates) {
+            var values = new Object[fields.size() + 2];
+            for (int i = 0; i < fields.size(); i++) {
+                values[i] = update.fields().get(fields.get(i));
+            }
+            values[fields.size()] = update.id();
+            values[fields.size() + 1] = update.version();
+            args.add(values);
+        }
+        return jdbcTemplate.batchUpdate(sql.toString(), args);
+    }
+}
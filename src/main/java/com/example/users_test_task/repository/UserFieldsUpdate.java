@@ -0,0 +1,13 @@
+package com.example.users_test_task.repository;
+
+import java.util.Map;
+
+/**
+ * new values of some fields of one user
+ *
+ * @param id      - user id
+ * @param version - current version of the user
+ * @param fields  - new values by field name
+ */
+public record UserFieldsUpdate(Long id, Long version, Map<String, Object> fields) {
+}
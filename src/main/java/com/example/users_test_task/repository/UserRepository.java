@@ -1,16 +1,25 @@
 package com.example.users_test_task.repository;
 
 import com.example.users_test_task.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * repository for user entity
  */
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserFieldsRepository {
 
     /**
      * get user data from db with some email
@@ -20,6 +29,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     Optional<User> findUserByEmail(String email);
 
+    /**
+     * get emails from @param emails which are already used
+     *
+     * @param emails - emails to check
+     * @return a set of used emails
+     */
+    @Query("select u.email from users u where u.email in :emails")
+    Set<String> findExistingEmails(Collection<String> emails);
+
+    /**
+     * stream all the used emails. Must be called in a transaction and the stream must be closed
+     *
+     * @return a stream of emails
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.email from users u")
+    Stream<String> streamAllEmails();
+
     /**
      * get users by date of birth from @param from to @param to
      *
@@ -29,5 +56,126 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     List<User> getUsersByDateOfBirthBetween(LocalDate from, LocalDate to);
 
+    /**
+     * get a page of users by date of birth from @param from to @param to after the (afterDate, afterId) key
+     *
+     * @param from      - from date
+     * @param to        - to date
+     * @param afterDate - date of birth of the last user on the previous page
+     * @param afterId   - id of the last user on the previous page
+     * @param pageable  - page size
+     * @return a list of users ordered by date of birth and id
+     */
+    @Query("select u from users u where u.dateOfBirth between :from and :to " +
+            "and (u.dateOfBirth > :afterDate or (u.dateOfBirth = :afterDate and u.id > :afterId)) " +
+            "order by u.dateOfBirth, u.id")
+    List<User> getUsersPageByDateOfBirthBetween(LocalDate from, LocalDate to, LocalDate afterDate, Long afterId,
+                                                Pageable pageable);
+
+    /**
+     * stream users by date of birth from @param from to @param to from the db cursor.
+     * Must be called in a transaction and the stream must be closed
+     *
+     * @param from - from date
+     * @param to   - to date
+     * @return a stream of users ordered by date of birth and id
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select u from users u where u.dateOfBirth between :from and :to order by u.dateOfBirth, u.id")
+    Stream<User> streamUsersByDateOfBirthBetween(LocalDate from, LocalDate to);
+
+    /**
+     * count users by year of birth with date of birth from @param from to @param to, together with the count
+     * of users whose birthday is after the month and day of the age cutoff. Ages are computed from these counts
+     * and the cutoff, so the age rule is not repeated in SQL
+     *
+     * @param from           - from date
+     * @param to             - to date
+     * @param cutoffMonthDay - month and day of the age cutoff as month * 100 + day
+     * @return a list of years with counts
+     */
+    @Query("select new com.example.users_test_task.repository.BirthYearCount(year(u.dateOfBirth), count(u), " +
+            "sum(case when month(u.dateOfBirth) * 100 + day(u.dateOfBirth) > :cutoffMonthDay then 1 else 0 end)) " +
+            "from users u where u.dateOfBirth between :from and :to group by year(u.dateOfBirth)")
+    List<BirthYearCount> countUsersByBirthYearAndBirthday(LocalDate from, LocalDate to, int cutoffMonthDay);
+
+    /**
+     * count users by year of birth with date of birth from @param from to @param to
+     *
+     * @param from - from date
+     * @param to   - to date
+     * @return a list of years with counts
+     */
+    @Query("select new com.example.users_test_task.repository.KeyCount(year(u.dateOfBirth), count(u)) from users u " +
+            "where u.dateOfBirth between :from and :to group by year(u.dateOfBirth)")
+    List<KeyCount> countUsersByBirthYear(LocalDate from, LocalDate to);
+
+    /**
+     * count users by month of birth with date of birth from @param from to @param to
+     *
+     * @param from - from date
+     * @param to   - to date
+     * @return a list of months with counts
+     */
+    @Query("select new com.example.users_test_task.repository.KeyCount(month(u.dateOfBirth), count(u)) from users u " +
+            "where u.dateOfBirth between :from and :to group by month(u.dateOfBirth)")
+    List<KeyCount> countUsersByBirthMonth(LocalDate from, LocalDate to);
+
+    /**
+     * stream ids and dates of birth of all the users. Must be called in a transaction and the stream must be closed
+     *
+     * @return a stream of ids with dates of birth
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.example.users_test_task.repository.UserDateOfBirth(u.id, u.dateOfBirth) from users u")
+    Stream<UserDateOfBirth> streamAllDatesOfBirth();
+
     void deleteAllByEmail(String email);
+
+    /**
+     * delete user by id with one statement
+     *
+     * @param id - user id
+     * @return count of deleted users
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from users u where u.id = :id")
+    int deleteUserById(Long id);
+
+    /**
+     * get a page of users with month and day of birth from @param from to @param to after the last user
+     * of the previous page, by the birth month day index
+     *
+     * @param from          - from month and day as month * 100 + day
+     * @param to            - to month and day as month * 100 + day
+     * @param afterMonthDay - month and day of birth of the last user on the previous page
+     * @param afterId       - id of the last user on the previous page
+     * @param pageable      - page size
+     * @return a list of users ordered by month and day of birth and id
+     */
+    @Query("select u from users u where u.birthMonthDay between :from and :to " +
+            "and (u.birthMonthDay > :afterMonthDay or (u.birthMonthDay = :afterMonthDay and u.id > :afterId)) " +
+            "order by u.birthMonthDay, u.id")
+    List<User> getUsersPageByBirthMonthDayBetween(Integer from, Integer to, Integer afterMonthDay, Long afterId,
+                                                  Pageable pageable);
+
+    /**
+     * set month and day of birth of the users saved before the column was added
+     *
+     * @return count of updated users
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update users u set u.birthMonthDay = month(u.dateOfBirth) * 100 + day(u.dateOfBirth) " +
+            "where u.birthMonthDay is null and u.dateOfBirth is not null")
+    int fillBirthMonthDays();
+
+    /**
+     * delete users by ids with one statement
+     *
+     * @param ids - users ids
+     * @return count of deleted users
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from users u where u.id in :ids")
+    int deleteUsersByIdIn(Collection<Long> ids);
 }
@@ -0,0 +1,185 @@
+package com.example.users_test_task.repository;
+
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.service.StatsGroup;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * storage of users behind the user service. The engine is selected by users.storage:
+ * jpa for the db, memory for a node-local storage without db. Import, export, batch patch and the register
+ * queue work only with the jpa engine, they write the db directly.
+ * A write with an email which is already used throws DataIntegrityViolationException in both engines,
+ * with the unique violation SQLState 23505 in the jpa engine and DuplicateKeyException in the memory engine
+ */
+public interface UserStorage {
+
+    /**
+     * insert the user, the id and the version are set to it
+     *
+     * @param user - user to insert
+     * @return saved user
+     */
+    User save(User user);
+
+    /**
+     * insert the users at once, none of them is saved if one email is already used
+     *
+     * @param users - users to insert
+     * @return saved users
+     */
+    List<User> saveAll(List<User> users);
+
+    /**
+     * get user by id
+     *
+     * @param id - user id
+     * @return optional user
+     */
+    Optional<User> findById(Long id);
+
+    /**
+     * get user by email
+     *
+     * @param email - user email
+     * @return optional user
+     */
+    Optional<User> findUserByEmail(String email);
+
+    /**
+     * get emails from @param emails which are already used
+     *
+     * @param emails - emails to check
+     * @return a set of used emails
+     */
+    Set<String> findExistingEmails(Collection<String> emails);
+
+    /**
+     * get users by date of birth from @param from to @param to
+     *
+     * @param from - from date
+     * @param to   - to date
+     * @return a list of users
+     */
+    List<User> getUsersByDateOfBirthBetween(LocalDate from, LocalDate to);
+
+    /**
+     * get a page of users by date of birth from @param from to @param to after the (afterDate, afterId) key
+     *
+     * @param from      - from date
+     * @param to        - to date
+     * @param afterDate - date of birth of the last user on the previous page
+     * @param afterId   - id of the last user on the previous page
+     * @param limit     - page size
+     * @return a list of users ordered by date of birth and id
+     */
+    List<User> getUsersPageByDateOfBirthBetween(LocalDate from, LocalDate to, LocalDate afterDate, Long afterId,
+                                                int limit);
+
+    /**
+     * get fields of users with date of birth from @param from to @param to after the last user of the previous page
+     *
+     * @param fields    - selected fields from UserFieldsRepository.FIELDS
+     * @param from      - from date
+     * @param to        - to date
+     * @param afterDate - date of birth of the last user on the previous page, null to start from the first user
+     * @param afterId   - id of the last user on the previous page
+     * @param limit     - max count of users, null for all the users
+     * @return a list of field values by field name ordered by date of birth and id
+     */
+    List<Map<String, Object>> getUserFieldsByDateOfBirthBetween(List<String> fields, LocalDate from, LocalDate to,
+                                                                LocalDate afterDate, Long afterId, Integer limit);
+
+    /**
+     * stream users by date of birth from @param from to @param to. Streamed users are not kept by the storage,
+     * so memory does not grow with the count of users. Must be called in a transaction and the stream must be closed
+     *
+     * @param from - from date
+     * @param to   - to date
+     * @return a stream of users ordered by date of birth and id
+     */
+    Stream<User> streamUsersByDateOfBirthBetween(LocalDate from, LocalDate to);
+
+    /**
+     * count users with date of birth from @param from to @param to by group
+     *
+     * @param from  - from date
+     * @param to    - to date
+     * @param group - group of users
+     * @return a list of group keys with counts
+     */
+    List<KeyCount> countUsers(LocalDate from, LocalDate to, StatsGroup group);
+
+    /**
+     * stream all the used emails. Must be called in a transaction and the stream must be closed
+     *
+     * @return a stream of emails
+     */
+    Stream<String> streamAllEmails();
+
+    /**
+     * stream ids and dates of birth of all the users. Must be called in a transaction and the stream must be closed
+     *
+     * @return a stream of ids with dates of birth
+     */
+    Stream<UserDateOfBirth> streamAllDatesOfBirth();
+
+    /**
+     * get a page of users with month and day of birth from @param from to @param to after the last user
+     * of the previous page
+     *
+     * @param from          - from month and day as month * 100 + day
+     * @param to            - to month and day as month * 100 + day
+     * @param afterMonthDay - month and day of birth of the last user on the previous page
+     * @param afterId       - id of the last user on the previous page
+     * @param limit         - page size
+     * @return a list of users ordered by month and day of birth and id
+     */
+    List<User> getUsersPageByBirthMonthDayBetween(int from, int to, int afterMonthDay, Long afterId, int limit);
+
+    /**
+     * set month and day of birth of the users saved before the column was added
+     *
+     * @return count of updated users
+     */
+    int fillBirthMonthDays();
+
+    /**
+     * set the fields of the user if its version is still the same, the version is incremented
+     *
+     * @param id      - user id
+     * @param version - user version the fields are based on, null if the user has no version yet
+     * @param fields  - new values by entity field name
+     * @return count of updated users, 0 if the user is not found or its version is changed
+     */
+    int updateUserFields(Long id, Long version, Map<String, Object> fields);
+
+    /**
+     * delete user by id
+     *
+     * @param id - user id
+     * @return count of deleted users
+     */
+    int deleteById(Long id);
+
+    /**
+     * delete users by ids
+     *
+     * @param ids - users ids
+     * @return count of deleted users
+     */
+    int deleteAllByIdIn(Collection<Long> ids);
+
+    /**
+     * delete users with the email
+     *
+     * @param email - user email
+     */
+    void deleteAllByEmail(String email);
+}
@@ -0,0 +1,87 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.config.UserProperties;
+import com.example.users_test_task.model.User;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * latest date of birth of a user with the min age. It is computed on startup and every midnight,
+ * so an age check is one date comparison and the same date can be used in db queries.
+ * Ages in statistics are counted from the same cutoff, so they agree with the min age check
+ */
+@Component
+@RequiredArgsConstructor
+public class AgeCutoff {
+
+    private final UserProperties userProperties;
+
+    private volatile Cutoff cutoff;
+
+    /**
+     * compute the cutoff date for today
+     */
+    @PostConstruct
+    @Scheduled(cron = "0 0 0 * * *")
+    public void refresh() {
+        int minAge = userProperties.getMinAge();
+        cutoff = new Cutoff(LocalDate.now().minusYears(minAge), minAge);
+    }
+
+    /**
+     * get the latest date of birth of a user with the min age
+     *
+     * @return cutoff date
+     */
+    public LocalDate getCutoff() {
+        return cutoff.date();
+    }
+
+    /**
+     * get month and day of the cutoff date
+     *
+     * @return month * 100 + day
+     */
+    public int getCutoffMonthDay() {
+        return User.toMonthDay(cutoff.date());
+    }
+
+    /**
+     * get full years of age of the user with this date of birth
+     *
+     * @param dateOfBirth - date of birth
+     * @return age in years
+     */
+    public int getAge(LocalDate dateOfBirth) {
+        return getAge(dateOfBirth.getYear(), User.toMonthDay(dateOfBirth) > getCutoffMonthDay());
+    }
+
+    /**
+     * get full years of age of a user born in the year
+     *
+     * @param year          - year of birth
+     * @param laterBirthday - true if the birthday is after the month and day of the cutoff
+     * @return age in years
+     */
+    public int getAge(int year, boolean laterBirthday) {
+        var current = cutoff;
+        return current.minAge() + current.date().getYear() - year - (laterBirthday ? 1 : 0);
+    }
+
+    /**
+     * check does the user with this date of birth has the min age
+     *
+     * @param dateOfBirth - date of birth
+     * @return true if the date is null or the user is old enough
+     */
+    public boolean isOldEnough(LocalDate dateOfBirth) {
+        return dateOfBirth == null || !dateOfBirth.isAfter(cutoff.date());
+    }
+
+    private record Cutoff(LocalDate date, int minAge) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.users_test_task.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * comma separated values (RFC 4180) used by the export and the import. Null is written as an empty value
+ * and an empty string as "", so they are read back as they were
+ */
+final class Csv {
+
+    private Csv() {
+    }
+
+    /**
+     * append one value, it is quoted only if it is needed
+     *
+     * @param out   - output
+     * @param value - value, may be null
+     * @throws IOException if the output is failed
+     */
+    static void append(Appendable out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        boolean quoted = value.isEmpty();
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quoted) {
+            out.append(value);
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    /**
+     * streaming reader of records. Quoted values may contain commas, quotes and line breaks
+     */
+    static class RecordReader {
+
+        private final Reader in;
+        private final StringBuilder value = new StringBuilder();
+        private int next = -2;
+        private long line = 1;
+        private long recordLine;
+
+        /**
+         * @param in - buffered input
+         */
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * read the next record
+         *
+         * @return values of the record, null values for unquoted empty values, or null at the end of the input
+         * @throws IOException if the input is failed or a quoted value is not closed
+         */
+        List<String> next() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+
+            recordLine = line;
+            var values = new ArrayList<String>();
+            while (true) {
+                boolean quoted = false;
+                value.setLength(0);
+
+                if (c == '"') {
+                    quoted = true;
+                    while (true) {
+                        c = read();
+                        if (c == -1) {
+                            throw new IOException("Error. Quoted value is not closed in line " + recordLine);
+                        }
+                        if (c == '"') {
+                            c = read();
+                            if (c != '"') {
+                                break;
+                            }
+                        }
+                        value.append((char) c);
+                    }
+                }
+                while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    value.append((char) c);
+                    c = read();
+                }
+                values.add(quoted || !value.isEmpty() ? value.toString() : null);
+
+                if (c == ',') {
+                    c = read();
+                    continue;
+                }
+                if (c == '\r') {
+                    c = read();
+                    if (c != '\n') {
+                        unread(c);
+                    }
+                }
+                return values;
+            }
+        }
+
+        /**
+         * get the line where the last record starts
+         *
+         * @return line number from 1
+         */
+        long getRecordLine() {
+            return recordLine;
+        }
+
+        private int read() throws IOException {
+            int c = next != -2 ? next : in.read();
+            next = -2;
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+
+        private void unread(int c) {
+            if (c == '\n') {
+                line--;
+            }
+            next = c;
+        }
+    }
+}
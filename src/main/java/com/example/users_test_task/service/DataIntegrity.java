@@ -0,0 +1,51 @@
+package com.example.users_test_task.service;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.sql.SQLException;
+
+/**
+ * mapping of db integrity errors to violations. Only a unique constraint violation means the email is used,
+ * other integrity errors are reported as data which the db does not accept
+ */
+final class DataIntegrity {
+
+    static final String DATA_REJECTED = "Error. The user data is not accepted by the db";
+
+    /**
+     * SQLState of a unique constraint violation in PostgreSQL and H2
+     */
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private DataIntegrity() {
+    }
+
+    /**
+     * check does the error is a unique constraint violation
+     *
+     * @param e - error from the storage
+     * @return true if a unique constraint is violated
+     */
+    static boolean isUniqueViolation(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DuplicateKeyException
+                    || cause instanceof SQLException sqlException && UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * get the violation of a failed write of one user
+     *
+     * @param e - error from the storage
+     * @return email violation for a unique constraint violation, otherwise a violation of the whole user
+     */
+    static Violation toViolation(DataIntegrityViolationException e) {
+        return isUniqueViolation(e)
+                ? new Violation("email", UserService.EMAIL_USED)
+                : new Violation("user", DATA_REJECTED);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.repository.UserStorage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * node-local index of used emails. It keeps 64-bit email hashes, so it can say that an email is definitely
+ * not used, but not that it is used. The unique email constraint in db is still the source of truth
+ */
+@Component
+@RequiredArgsConstructor
+public class EmailIndex {
+
+    private final UserStorage userStorage;
+
+    private final Set<Long> hashes = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean ready;
+
+    /**
+     * load all the emails from the storage when the application is started
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        try (var emails = userStorage.streamAllEmails()) {
+            emails.forEach(this::add);
+        }
+        ready = true;
+    }
+
+    /**
+     * check does email may be used
+     *
+     * @param email - email
+     * @return false if the email is definitely not used
+     */
+    public boolean mightContain(String email) {
+        return !ready || hashes.contains(hash(email));
+    }
+
+    /**
+     * add the used email
+     *
+     * @param email - email
+     */
+    public void add(String email) {
+        if (email != null) {
+            hashes.add(hash(email));
+        }
+    }
+
+    /**
+     * remove the email which is not used anymore
+     *
+     * @param email - email
+     */
+    public void remove(String email) {
+        if (email != null) {
+            hashes.remove(hash(email));
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the email
+     *
+     * @param email - email
+     * @return hash
+     */
+    private static long hash(String email) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            hash ^= email.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.exception.InvalidRequestException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * formats of the users export and import files
+ */
+@Getter
+@RequiredArgsConstructor
+public enum FileFormat {
+
+    /**
+     * one json object per line
+     */
+    NDJSON("application/x-ndjson", "ndjson"),
+
+    /**
+     * comma separated values with a header line
+     */
+    CSV("text/csv;charset=UTF-8", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    /**
+     * get format by its name from the client
+     *
+     * @param name - format name
+     * @return format
+     * @throws IllegalArgumentException if the name is incorrect
+     */
+    public static FileFormat of(String name) throws IllegalArgumentException {
+        for (var format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new InvalidRequestException("Error. Incorrect format: " + name + ". It must be ndjson or csv");
+    }
+}
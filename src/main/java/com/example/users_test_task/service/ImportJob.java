@@ -0,0 +1,54 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.dto.ImportStatusDTO;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * state of one import. It is updated by the import thread and read by status requests
+ */
+@Getter
+@RequiredArgsConstructor
+public class ImportJob {
+
+    /**
+     * import status
+     */
+    public enum Status {
+        RUNNING, DONE, FAILED
+    }
+
+    private final String id;
+    private final FileFormat format;
+    private final Path file;
+    private final Path rejectionsFile;
+
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile Status status = Status.RUNNING;
+    private volatile String error;
+
+    /**
+     * finish the import
+     *
+     * @param error - error message, null if the import is done
+     */
+    void finish(String error) {
+        this.error = error;
+        this.status = error == null ? Status.DONE : Status.FAILED;
+    }
+
+    /**
+     * get progress of the import for the client
+     *
+     * @return import status
+     */
+    public ImportStatusDTO toDTO() {
+        return new ImportStatusDTO(id, status.name().toLowerCase(), read.get(), imported.get(), rejected.get(), error);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.model.User;
+
+import java.util.List;
+
+/**
+ * result of one item of a batch operation
+ *
+ * @param index      - item position in the request
+ * @param user       - saved user or null if the item was rejected
+ * @param violations - violations of the rejected item, empty if the item was saved
+ */
+public record ItemResult(int index, User user, List<Violation> violations) {
+}
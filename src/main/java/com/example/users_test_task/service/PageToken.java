@@ -0,0 +1,42 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * opaque keyset pagination token. It keeps the sort key and the id of the last user on the page
+ *
+ * @param key - sort key of the last user
+ * @param id  - id of the last user
+ */
+public record PageToken(String key, long id) {
+
+    /**
+     * encode the token to a string for the client
+     *
+     * @return encoded token
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * decode the token from the client
+     *
+     * @param token - encoded token
+     * @return decoded token
+     * @throws IllegalArgumentException if the token is incorrect
+     */
+    public static PageToken decode(String token) throws IllegalArgumentException {
+        try {
+            var value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(':');
+            return new PageToken(value.substring(0, separator), Long.parseLong(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Error. Incorrect page token");
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * append-only journal of accepted asynchronous registrations. Entries are written to memory-mapped segment
+ * files of a fixed size, a new segment is started when the current one is full. Every entry has its length and
+ * checksum, so a torn write at the end of a segment is found and ignored on replay.
+ * An accepted registration is durable after sync, and concurrent syncs are done with one force of the written
+ * range (group commit). A registration is marked done after it is written to db, and segments are deleted
+ * from the oldest one when all their registrations are done. The directory is locked while the journal is open,
+ * so a second process can not replay and delete the segments of a running one.
+ * Locks are ReentrantLock, so a virtual thread is not pinned to its carrier while it waits for the force
+ */
+public class RegisterJournal implements Closeable {
+
+    private static final byte ACCEPTED = 1;
+    private static final byte DONE = 2;
+
+    /**
+     * length and checksum of an entry
+     */
+    private static final int HEADER_SIZE = 8;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final String LOCK_FILE = "journal.lock";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final ObjectMapper objectMapper;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<String, Segment> segmentsById = new ConcurrentHashMap<>();
+    /**
+     * guards the segments and the current write position
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * allows one force at a time, other threads wait for it and their entries are forced with the next one
+     */
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private FileChannel lockChannel;
+    private FileLock dirLock;
+    private Segment current;
+    private long written;
+    private volatile long synced;
+
+    /**
+     * @param dir          - directory of segment files
+     * @param segmentSize  - size of one segment file in bytes
+     * @param objectMapper - object mapper for users
+     */
+    public RegisterJournal(Path dir, int segmentSize, ObjectMapper objectMapper) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * read the registrations which are not done from the existing segments, write them to a new segment
+     * and delete the old segments
+     *
+     * @return users of the registrations which are not done by tracking id, in the order they were accepted
+     * @throws IOException if the directory is locked by another journal or a segment is not read or written
+     */
+    public Map<String, User> open() throws IOException {
+        lock.lock();
+        try {
+            Files.createDirectories(dir);
+            lockDir();
+            try {
+                return replay();
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * take an exclusive lock of the journal directory
+     *
+     * @throws IOException if the directory is locked by another journal
+     */
+    private void lockDir() throws IOException {
+        var channel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IOException("Error. The journal directory " + dir + " is used by another journal");
+        }
+        lockChannel = channel;
+        dirLock = fileLock;
+    }
+
+    /**
+     * read the registrations which are not done, write them to a new segment and delete the old segments
+     *
+     * @return users of the registrations which are not done by tracking id
+     * @throws IOException if a segment is not read or written
+     */
+    private Map<String, User> replay() throws IOException {
+        var files = new TreeMap<Long, Path>();
+        try (var stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (var file : stream) {
+                var name = file.getFileName().toString();
+                files.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+            }
+        }
+
+        var pending = new LinkedHashMap<String, User>();
+        for (var file : files.values()) {
+            read(file, pending);
+        }
+
+        current = createSegment(files.isEmpty() ? 0 : files.lastKey() + 1);
+        for (var entry : pending.entrySet()) {
+            write(ACCEPTED, objectMapper.writeValueAsBytes(new Entry(entry.getKey(), entry.getValue())), entry.getKey());
+        }
+        current.buffer.force();
+        current.synced = current.buffer.position();
+        synced = written;
+
+        for (var file : files.values()) {
+            Files.delete(file);
+        }
+        return pending;
+    }
+
+    /**
+     * append an accepted registration. It is durable only after sync
+     *
+     * @param id   - tracking id
+     * @param user - validated user
+     * @return journal position to sync
+     * @throws IOException if the entry is not written
+     */
+    public long append(String id, User user) throws IOException {
+        return write(ACCEPTED, objectMapper.writeValueAsBytes(new Entry(id, user)), id);
+    }
+
+    /**
+     * wait until the journal is forced to the storage at least up to the position. If another thread is forcing
+     * the journal now, this thread waits for it and then forces everything written in the meantime at once
+     *
+     * @param position - position returned by append
+     * @throws IOException if the journal is not forced
+     */
+    public void sync(long position) throws IOException {
+        if (synced >= position) {
+            return;
+        }
+
+        syncLock.lock();
+        try {
+            if (synced >= position) {
+                return;
+            }
+
+            Segment segment;
+            int from;
+            int to;
+            long end;
+            lock.lock();
+            try {
+                segment = current;
+                from = segment.synced;
+                to = segment.buffer.position();
+                end = written;
+            } finally {
+                lock.unlock();
+            }
+            segment.buffer.force(from, to - from);
+            lock.lock();
+            try {
+                segment.synced = Math.max(segment.synced, to);
+                synced = Math.max(synced, end);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * mark the registration as done, it is not replayed after a restart. It is not synced, because a registration
+     * which is written to db but not marked as done is found by its email on replay
+     *
+     * @param id - tracking id
+     * @throws IOException if the entry is not written
+     */
+    public void done(String id) throws IOException {
+        var segment = segmentsById.remove(id);
+        if (segment == null) {
+            return;
+        }
+
+        write(DONE, id.getBytes(StandardCharsets.UTF_8), null);
+        lock.lock();
+        try {
+            segment.pending--;
+            while (segments.firstEntry().getValue() != current && segments.firstEntry().getValue().pending == 0) {
+                var first = segments.pollFirstEntry().getValue();
+                first.channel.close();
+                Files.delete(first.file);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * force and close the segments and release the directory lock
+     *
+     * @throws IOException if the journal is not forced
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (current != null) {
+                current.buffer.force();
+            }
+            for (var segment : segments.values()) {
+                segment.channel.close();
+            }
+            segments.clear();
+            current = null;
+            if (lockChannel != null) {
+                dirLock.release();
+                lockChannel.close();
+                lockChannel = null;
+                dirLock = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * write an entry to the current segment, a new segment is started if the entry does not fit
+     *
+     * @param type    - entry type
+     * @param payload - entry data
+     * @param id      - tracking id of an accepted registration, null for other entries
+     * @return journal position after the entry
+     * @throws IOException if the entry is not written
+     */
+    private long write(byte type, byte[] payload, String id) throws IOException {
+        lock.lock();
+        try {
+            return writeLocked(type, payload, id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long writeLocked(byte type, byte[] payload, String id) throws IOException {
+        if (current == null) {
+            throw new IOException("Error. The journal is closed");
+        }
+        int size = HEADER_SIZE + 1 + payload.length;
+        if (size > segmentSize) {
+            throw new IOException("Error. The journal entry is larger than the segment");
+        }
+        if (current.buffer.remaining() < size) {
+            current.buffer.force();
+            current.synced = current.buffer.position();
+            synced = written;
+            current = createSegment(current.number + 1);
+        }
+
+        var crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        current.buffer.putInt(1 + payload.length).putInt((int) crc.getValue()).put(type).put(payload);
+        written += size;
+
+        if (type == ACCEPTED) {
+            current.pending++;
+            segmentsById.put(id, current);
+        }
+        return written;
+    }
+
+    /**
+     * read accepted and done registrations from a segment until its end or a broken entry
+     *
+     * @param file    - segment file
+     * @param pending - registrations which are not done
+     * @throws IOException if the segment is not read
+     */
+    private void read(Path file, Map<String, User> pending) throws IOException {
+        var buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return;
+            }
+
+            var data = new byte[length];
+            buffer.get(data);
+            var crc = new CRC32C();
+            crc.update(data);
+            if ((int) crc.getValue() != checksum) {
+                return;
+            }
+
+            if (data[0] == ACCEPTED) {
+                var entry = objectMapper.readValue(data, 1, length - 1, Entry.class);
+                pending.put(entry.id(), entry.user());
+            } else if (data[0] == DONE) {
+                pending.remove(new String(data, 1, length - 1, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private Segment createSegment(long number) throws IOException {
+        var file = dir.resolve(PREFIX + String.format("%020d", number) + SUFFIX);
+        var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var segment = new Segment(number, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        segments.put(number, segment);
+        return segment;
+    }
+
+    /**
+     * segment file mapped to memory
+     */
+    private static class Segment {
+
+        private final long number;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        /**
+         * count of accepted registrations in this segment which are not done
+         */
+        private int pending;
+
+        /**
+         * position up to which the segment is forced
+         */
+        private int synced;
+
+        private Segment(long number, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * accepted registration
+     *
+     * @param id   - tracking id
+     * @param user - validated user
+     */
+    private record Entry(String id, User user) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.users_test_task.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * node-local emails of accepted asynchronous registrations which are not written to db yet.
+ * Register and update treat a reserved email as used, so the queued user is not rejected after its 202
+ */
+@Component
+public class ReservedEmails {
+
+    private final Set<String> emails = ConcurrentHashMap.newKeySet();
+
+    /**
+     * reserve the email
+     *
+     * @param email - email
+     * @return false if the email is already reserved
+     */
+    public boolean reserve(String email) {
+        return emails.add(email);
+    }
+
+    /**
+     * release the email after the registration is written or rejected
+     *
+     * @param email - email
+     */
+    public void release(String email) {
+        emails.remove(email);
+    }
+
+    /**
+     * check does the email is reserved
+     *
+     * @param email - email
+     * @return true if the email is reserved
+     */
+    public boolean isReserved(String email) {
+        return email != null && emails.contains(email);
+    }
+}
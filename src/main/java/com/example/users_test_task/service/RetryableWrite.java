@@ -0,0 +1,24 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.exception.VersionConflictException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.lang.annotation.*;
+
+/**
+ * retry of a write transaction on transient db errors (optimistic lock and lock acquisition failures)
+ * with exponential jittered backoff. A version conflict with the client version is not retried
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Retryable(
+        retryFor = TransientDataAccessException.class,
+        noRetryFor = VersionConflictException.class,
+        maxAttempts = 5,
+        backoff = @Backoff(delay = 20, multiplier = 2, maxDelay = 500, random = true)
+)
+public @interface RetryableWrite {
+}
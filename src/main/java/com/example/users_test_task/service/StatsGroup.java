@@ -0,0 +1,66 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.exception.InvalidRequestException;
+
+import java.time.LocalDate;
+
+/**
+ * groups of users statistics
+ */
+public enum StatsGroup {
+
+    /**
+     * full years of age today
+     */
+    AGE {
+        @Override
+        public int getKey(LocalDate dateOfBirth, AgeCutoff ageCutoff) {
+            return ageCutoff.getAge(dateOfBirth);
+        }
+    },
+
+    /**
+     * year of birth
+     */
+    YEAR {
+        @Override
+        public int getKey(LocalDate dateOfBirth, AgeCutoff ageCutoff) {
+            return dateOfBirth.getYear();
+        }
+    },
+
+    /**
+     * month of birth from 1 to 12
+     */
+    MONTH {
+        @Override
+        public int getKey(LocalDate dateOfBirth, AgeCutoff ageCutoff) {
+            return dateOfBirth.getMonthValue();
+        }
+    };
+
+    /**
+     * get group key of the date of birth
+     *
+     * @param dateOfBirth - date of birth
+     * @param ageCutoff   - age cutoff of today
+     * @return group key
+     */
+    public abstract int getKey(LocalDate dateOfBirth, AgeCutoff ageCutoff);
+
+    /**
+     * get group by its name from the client
+     *
+     * @param name - group name
+     * @return group
+     * @throws IllegalArgumentException if the name is incorrect
+     */
+    public static StatsGroup of(String name) throws IllegalArgumentException {
+        for (var group : values()) {
+            if (group.name().equalsIgnoreCase(name)) {
+                return group;
+            }
+        }
+        throw new InvalidRequestException("Error. Incorrect group_by: " + name + ". It must be age, year or month");
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.repository.UserStorage;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * read-through cache of users in front of the user storage.
+ * Users are cached by id. Emails are cached as email to id, and a cached email is used only if the user
+ * with this id still has this email, so email entries do not need to be evicted
+ */
+@Component
+public class UserCache {
+
+    private final UserStorage userStorage;
+    private final Cache users;
+    private final Cache userIdsByEmail;
+
+    public UserCache(UserStorage userStorage, CacheManager cacheManager) {
+        this.userStorage = userStorage;
+        this.users = Objects.requireNonNull(cacheManager.getCache("users"));
+        this.userIdsByEmail = Objects.requireNonNull(cacheManager.getCache("userIdsByEmail"));
+    }
+
+    /**
+     * get user by id from the cache or from db
+     *
+     * @param id - user id
+     * @return optional copy of the user
+     */
+    public Optional<User> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        var cached = users.get(id, User.class);
+        if (cached != null) {
+            return Optional.of(copyOf(cached));
+        }
+
+        var user = userStorage.findById(id);
+        user.ifPresent(this::put);
+        return user.map(UserCache::copyOf);
+    }
+
+    /**
+     * get user by email from the cache or from db
+     *
+     * @param email - user email
+     * @return optional copy of the user
+     */
+    public Optional<User> findUserByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+
+        var id = userIdsByEmail.get(email, Long.class);
+        if (id != null) {
+            var user = findById(id);
+            if (user.isPresent() && email.equals(user.get().getEmail())) {
+                return user;
+            }
+            userIdsByEmail.evict(email);
+        }
+
+        var user = userStorage.findUserByEmail(email);
+        user.ifPresent(this::put);
+        return user.map(UserCache::copyOf);
+    }
+
+    /**
+     * evict user from the cache now and after the current transaction is committed,
+     * so a concurrent reader can not cache the old version before the commit
+     *
+     * @param id - user id
+     */
+    public void evict(Long id) {
+        if (id == null) {
+            return;
+        }
+
+        users.evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    users.evict(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * put a copy of the user to the caches. In a transaction the user is put after the commit,
+     * so data of a rolled back transaction is never cached
+     *
+     * @param user - user from db
+     */
+    private void put(User user) {
+        var copy = copyOf(user);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            users.put(copy.getId(), copy);
+            userIdsByEmail.put(copy.getEmail(), copy.getId());
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                users.put(copy.getId(), copy);
+                userIdsByEmail.put(copy.getEmail(), copy.getId());
+            }
+        });
+    }
+
+    /**
+     * copy the user, so cached users are not shared with the persistence context and callers
+     *
+     * @param user - user to copy
+     * @return copy of the user
+     */
+    private static User copyOf(User user) {
+        var copy = new User();
+        copy.copy(user);
+        return copy;
+    }
+}
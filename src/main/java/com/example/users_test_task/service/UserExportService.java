@@ -0,0 +1,152 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.config.UserProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * export of all the users. Rows are read from a forward-only jdbc cursor and written to the output one by one,
+ * without user entities, so memory does not grow with the count of users. It reads the db directly,
+ * so it is not created with the memory storage
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "users", name = "storage", havingValue = "jpa", matchIfMissing = true)
+public class UserExportService {
+
+    private static final String[] COLUMNS = {
+            "id", "email", "firstName", "lastName", "dateOfBirth", "address", "phoneNumber", "version"
+    };
+    private static final String SQL = "select id, email, first_name, last_name, date_of_birth, address, phone_number, version " +
+            "from users order by id";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final UserProperties userProperties;
+
+    /**
+     * write all the users ordered by id to the output stream. The output stream is closed at the end
+     *
+     * @param format       - export format
+     * @param gzip         - compress the output with gzip
+     * @param outputStream - output stream
+     * @return count of exported users
+     * @throws IOException if the output is failed
+     */
+    @Transactional(readOnly = true)
+    public long export(FileFormat format, boolean gzip, OutputStream outputStream) throws IOException {
+        var out = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        long[] count = {0};
+
+        try (var writer = format == FileFormat.NDJSON ? new NdjsonWriter(out) : new CsvWriter(out)) {
+            jdbcTemplate.query(connection -> {
+                var statement = connection.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(userProperties.getExport().getFetchSize());
+                return statement;
+            }, (RowCallbackHandler) row -> {
+                try {
+                    writer.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+
+    /**
+     * writer of users rows in some format
+     */
+    private interface RowWriter extends Closeable {
+
+        /**
+         * write the current row of the result set
+         *
+         * @param row - result set with columns from SQL
+         * @throws IOException  if the output is failed
+         * @throws SQLException if the row is not read
+         */
+        void write(ResultSet row) throws IOException, SQLException;
+    }
+
+    /**
+     * writes one json object per line with a streaming json generator
+     */
+    private class NdjsonWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            generator = objectMapper.getFactory().createGenerator(out);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet row) throws IOException, SQLException {
+            generator.writeStartObject();
+            generator.writeNumberField(COLUMNS[0], row.getLong(1));
+            for (int i = 1; i < COLUMNS.length - 1; i++) {
+                generator.writeStringField(COLUMNS[i], row.getString(i + 1));
+            }
+            long version = row.getLong(COLUMNS.length);
+            if (row.wasNull()) {
+                generator.writeNullField(COLUMNS[COLUMNS.length - 1]);
+            } else {
+                generator.writeNumberField(COLUMNS[COLUMNS.length - 1], version);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * writes a header line and then one line per user
+     */
+    private static class CsvWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet row) throws IOException, SQLException {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Csv.append(writer, row.getString(i + 1));
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
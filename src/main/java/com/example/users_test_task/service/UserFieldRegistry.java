@@ -0,0 +1,130 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.exception.InvalidRequestException;
+import com.example.users_test_task.model.User;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * registry of typed user field setters for partial updates. It is built once on startup,
+ * so an update does not need reflection
+ */
+@Component
+public class UserFieldRegistry {
+
+    private final Map<String, BiPredicate<User, Object>> setters = Map.of(
+            "email", setter(User::setEmail, UserFieldRegistry::toText),
+            "firstName", setter(User::setFirstName, UserFieldRegistry::toText),
+            "lastName", setter(User::setLastName, UserFieldRegistry::toText),
+            "dateOfBirth", setter(User::setDateOfBirth, UserFieldRegistry::toLocalDate),
+            "address", setter(User::setAddress, UserFieldRegistry::toText),
+            "phoneNumber", setter(User::setPhoneNumber, UserFieldRegistry::toText)
+    );
+
+    /**
+     * set the converted value to the user field
+     *
+     * @param user  - user to update
+     * @param field - field name
+     * @param value - raw value from the client
+     * @throws IllegalArgumentException if the field is unknown or the value has an incorrect type
+     */
+    public void set(User user, String field, Object value) throws IllegalArgumentException {
+        var violation = trySet(user, field, value);
+        if (violation != null) {
+            throw new InvalidRequestException(violation.message());
+        }
+    }
+
+    /**
+     * set the converted value to the user field without throwing
+     *
+     * @param user  - user to update
+     * @param field - field name
+     * @param value - raw value from the client
+     * @return violation if the field is unknown or the value has an incorrect type, otherwise null
+     */
+    public Violation trySet(User user, String field, Object value) {
+        var setter = setters.get(field);
+        if (setter == null) {
+            return new Violation(field, "Error. Incorrect field: " + field);
+        }
+        if (!setter.test(user, value)) {
+            return new Violation(field, "Error. Incorrect value of field: " + field);
+        }
+        return null;
+    }
+
+    /**
+     * convert the raw id value from the client
+     *
+     * @param value - raw value
+     * @return user id
+     * @throws IllegalArgumentException if the value is not an integer number
+     */
+    public Long toId(Object value) throws IllegalArgumentException {
+        try {
+            if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof String string) {
+                return Long.valueOf(string.trim());
+            }
+        } catch (NumberFormatException ignored) {
+            // handled below
+        }
+        throw new InvalidRequestException("Error. Incorrect value of field: id");
+    }
+
+    /**
+     * create a setter which converts the value before setting
+     *
+     * @param setter    - typed setter
+     * @param converter - value converter, returns null if the value has an incorrect type
+     * @param <T>       - field type
+     * @return setter of the raw value, returns false if the value has an incorrect type
+     */
+    private static <T> BiPredicate<User, Object> setter(BiConsumer<User, T> setter, Function<Object, T> converter) {
+        return (user, value) -> {
+            T converted = value == null ? null : converter.apply(value);
+            if (value != null && converted == null) {
+                return false;
+            }
+            setter.accept(user, converted);
+            return true;
+        };
+    }
+
+    /**
+     * convert the raw value to a string
+     *
+     * @param value - raw value
+     * @return string or null if the value is not a string
+     */
+    private static String toText(Object value) {
+        return value instanceof String string ? string : null;
+    }
+
+    /**
+     * convert the raw value in format YYYY-MM-DD to a date
+     *
+     * @param value - raw value
+     * @return date or null if the value is not a date
+     */
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        try {
+            return value instanceof String string ? LocalDate.parse(string) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.config.UserProperties;
+import com.example.users_test_task.dto.ImportStatusDTO;
+import com.example.users_test_task.dto.UserDTO;
+import com.example.users_test_task.exception.InvalidRequestException;
+import com.example.users_test_task.mapper.UserMapper;
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.repository.UserFieldsRepository;
+import com.example.users_test_task.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * import of users from NDJSON or CSV files. The uploaded file is saved to users.import.dir and imported
+ * in the background one import at a time. Rows are read in chunks, every chunk is validated in parallel with
+ * the same rules as register, emails are checked within the chunk and against db, and valid users are written
+ * with one PostgreSQL COPY (or batched inserts on other dbs) in one transaction per chunk.
+ * Every rejected row is written to the rejection file with its line number and violations.
+ * A finished import is kept for users.import.status-ttl, then its rejection file is deleted.
+ * It writes the db directly, so it is not created with the memory storage
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "users", name = "storage", havingValue = "jpa", matchIfMissing = true)
+public class UserImportService {
+
+    private static final int IN_QUERY_CHUNK_SIZE = 1000;
+    private static final Set<String> IGNORED_COLUMNS = Set.of("id", "version");
+    private static final String COPY_SQL = "COPY users (id, email, first_name, last_name, date_of_birth, address, " +
+            "phone_number, version, birth_month_day) FROM STDIN WITH (FORMAT csv)";
+
+    private final UserService userService;
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final UserFieldRegistry userFieldRegistry;
+    private final EmailIndex emailIndex;
+    private final UserStatsSummary userStatsSummary;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final UserProperties userProperties;
+    private final ReservedEmails reservedEmails;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "users-import"));
+    private Cache<String, ImportJob> jobs;
+
+    /**
+     * create the import cache. A running import does not expire, a finished one expires after the status ttl
+     * and its rejection file is deleted
+     */
+    @PostConstruct
+    public void init() {
+        jobs = Caffeine.newBuilder()
+                .expireAfter(new FinishedJobExpiry())
+                .scheduler(Scheduler.systemScheduler())
+                .removalListener((String id, ImportJob job, RemovalCause cause) -> {
+                    if (job != null && cause.wasEvicted()) {
+                        deleteFile(job.getRejectionsFile());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * save the uploaded file and start its import
+     *
+     * @param format      - file format
+     * @param inputStream - uploaded file
+     * @return status of the started import
+     * @throws IOException if the file is not saved
+     */
+    public ImportStatusDTO start(FileFormat format, InputStream inputStream) throws IOException {
+        var dir = Path.of(userProperties.getImport().getDir());
+        Files.createDirectories(dir);
+
+        var id = UUID.randomUUID().toString();
+        var job = new ImportJob(id, format, dir.resolve(id + "." + format.getExtension()),
+                dir.resolve(id + "-rejections.ndjson"));
+        Files.copy(inputStream, job.getFile());
+
+        jobs.put(id, job);
+        executor.execute(() -> run(job));
+        return job.toDTO();
+    }
+
+    /**
+     * get progress of the import
+     *
+     * @param id - import id
+     * @return import status
+     * @throws IllegalArgumentException if there is no import with this id
+     */
+    public ImportStatusDTO getStatus(String id) throws IllegalArgumentException {
+        return getJob(id).toDTO();
+    }
+
+    /**
+     * get the rejection file of the import. It is written while the import is running
+     *
+     * @param id - import id
+     * @return path to the file with one rejected row per line
+     * @throws IllegalArgumentException if there is no import with this id
+     */
+    public Path getRejectionsFile(String id) throws IllegalArgumentException {
+        return getJob(id).getRejectionsFile();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ImportJob getJob(String id) throws IllegalArgumentException {
+        var job = id == null ? null : jobs.getIfPresent(id);
+        if (job == null) {
+            throw new InvalidRequestException("Error. Import not found: " + id);
+        }
+        return job;
+    }
+
+    /**
+     * import the saved file chunk by chunk
+     *
+     * @param job - import
+     */
+    private void run(ImportJob job) {
+        int chunkSize = userProperties.getImport().getChunkSize();
+        boolean copy = isCopySupported();
+
+        try (var reader = Files.newBufferedReader(job.getFile(), StandardCharsets.UTF_8);
+             var rejections = Files.newBufferedWriter(job.getRejectionsFile(), StandardCharsets.UTF_8)) {
+            var rows = job.getFormat() == FileFormat.NDJSON ? new NdjsonRows(reader) : new CsvRows(reader);
+            var chunk = new ArrayList<Row>(chunkSize);
+            for (var row = rows.next(); row != null; row = rows.next()) {
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    importChunk(job, chunk, copy, rejections);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(job, chunk, copy, rejections);
+            }
+
+            job.finish(null);
+            log.info("Import {} is done: {} users imported, {} rows rejected", job.getId(),
+                    job.getImported().get(), job.getRejected().get());
+        } catch (Exception e) {
+            job.finish(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+            log.error("Import {} is failed after {} rows", job.getId(), job.getRead().get(), e);
+        } finally {
+            deleteFile(job.getFile());
+            // put the finished job again, so it expires after the status ttl
+            jobs.put(job.getId(), job);
+        }
+    }
+
+    /**
+     * delete a file of the import
+     *
+     * @param file - uploaded file or rejection file
+     */
+    private void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Import file {} is not deleted", file, e);
+        }
+    }
+
+    /**
+     * validate and save one chunk of rows
+     *
+     * @param job        - import
+     * @param chunk      - rows
+     * @param copy       - write with PostgreSQL COPY
+     * @param rejections - rejection file
+     * @throws IOException if the rejection file is not written
+     */
+    private void importChunk(ImportJob job, List<Row> chunk, boolean copy, Writer rejections) throws IOException {
+        chunk.parallelStream()
+                .filter(row -> row.user != null)
+                .forEach(row -> row.violations = userService.validateUser(row.user, false));
+
+        var candidates = new LinkedHashMap<String, Row>();
+        for (var row : chunk) {
+            if (row.violations.isEmpty() && candidates.putIfAbsent(row.user.getEmail(), row) != null) {
+                row.violations = List.of(new Violation("email", UserService.EMAIL_USED));
+            }
+        }
+
+        rejectUsedEmails(candidates, true);
+        try {
+            save(candidates.values(), copy);
+        } catch (DataIntegrityViolationException e) {
+            // an email may be written by another node or without the app, so the index does not know it
+            rejectUsedEmails(candidates, false);
+            try {
+                save(candidates.values(), copy);
+            } catch (DataIntegrityViolationException retryException) {
+                saveOneByOne(candidates, copy);
+            }
+        }
+
+        for (var row : chunk) {
+            if (!row.violations.isEmpty()) {
+                rejections.write(objectMapper.writeValueAsString(new Rejection(row.line, row.violations)));
+                rejections.write('\n');
+            }
+        }
+        rejections.flush();
+
+        job.getRead().addAndGet(chunk.size());
+        job.getImported().addAndGet(candidates.size());
+        job.getRejected().addAndGet(chunk.size() - candidates.size());
+        log.debug("Import {}: {} rows read", job.getId(), job.getRead().get());
+    }
+
+    /**
+     * remove candidates with emails which are already in db or reserved by queued registrations and reject them
+     *
+     * @param candidates - valid rows by email
+     * @param useIndex   - check in db only the emails which the email index might contain
+     */
+    private void rejectUsedEmails(Map<String, Row> candidates, boolean useIndex) {
+        var emails = new ArrayList<String>(candidates.size());
+        var iterator = candidates.values().iterator();
+        while (iterator.hasNext()) {
+            var row = iterator.next();
+            var email = row.user.getEmail();
+            if (reservedEmails.isReserved(email)) {
+                row.violations = List.of(new Violation("email", UserService.EMAIL_USED));
+                iterator.remove();
+            } else if (!useIndex || emailIndex.mightContain(email)) {
+                emails.add(email);
+            }
+        }
+
+        for (int from = 0; from < emails.size(); from += IN_QUERY_CHUNK_SIZE) {
+            var chunk = emails.subList(from, Math.min(from + IN_QUERY_CHUNK_SIZE, emails.size()));
+            for (var email : userRepository.findExistingEmails(chunk)) {
+                candidates.remove(email).violations = List.of(new Violation("email", UserService.EMAIL_USED));
+            }
+        }
+    }
+
+    /**
+     * save the rows of a chunk which the db refused one by one, each in its own transaction.
+     * Every row which the db refuses again is rejected with its own violation
+     *
+     * @param candidates - valid rows by email, the refused rows are removed
+     * @param copy       - write with PostgreSQL COPY
+     */
+    private void saveOneByOne(Map<String, Row> candidates, boolean copy) {
+        var iterator = candidates.values().iterator();
+        while (iterator.hasNext()) {
+            var row = iterator.next();
+            try {
+                save(List.of(row), copy);
+            } catch (DataIntegrityViolationException e) {
+                row.violations = List.of(DataIntegrity.toViolation(e));
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * save the valid rows in one transaction. Errors of the db are translated, so a refused row is reported
+     * as DataIntegrityViolationException on both paths
+     *
+     * @param rows - valid rows
+     * @param copy - write with PostgreSQL COPY
+     * @throws DataIntegrityViolationException if the db refuses a row
+     */
+    private void save(Collection<Row> rows, boolean copy) throws DataIntegrityViolationException {
+        var users = new ArrayList<User>(rows.size());
+        for (var row : rows) {
+            row.user.setId(null);
+            row.user.setVersion(null);
+            users.add(row.user);
+        }
+        if (users.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (copy) {
+                copy(users);
+            } else {
+                userRepository.saveAllAndFlush(users);
+                entityManager.clear();
+            }
+        });
+    }
+
+    /**
+     * write users with PostgreSQL COPY. Ids are taken from users_seq by blocks like Hibernate takes them,
+     * and the entity listener work is done here because there are no entities
+     *
+     * @param users - valid users
+     */
+    private void copy(List<User> users) {
+        var ids = allocateIds(users.size());
+        var data = new StringBuilder(users.size() * 128);
+        try {
+            for (int i = 0; i < users.size(); i++) {
+                var user = users.get(i);
+                user.setId(ids[i]);
+                user.setVersion(0L);
+
+                data.append(user.getId()).append(',');
+                Csv.append(data, user.getEmail());
+                data.append(',');
+                Csv.append(data, user.getFirstName());
+                data.append(',');
+                Csv.append(data, user.getLastName());
+                data.append(',');
+                Csv.append(data, user.getDateOfBirth() == null ? null : user.getDateOfBirth().toString());
+                data.append(',');
+                Csv.append(data, user.getAddress());
+                data.append(',');
+                Csv.append(data, user.getPhoneNumber());
+                data.append(",0,");
+                if (user.getBirthMonthDay() != null) {
+                    data.append(user.getBirthMonthDay());
+                }
+                data.append('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(data.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        for (var user : users) {
+            emailIndex.add(user.getEmail());
+            userStatsSummary.put(user.getId(), user.getDateOfBirth());
+        }
+    }
+
+    /**
+     * take ids from users_seq. Every sequence value is the last id of a block of User.ID_ALLOCATION_SIZE ids
+     *
+     * @param count - count of ids
+     * @return ids
+     */
+    private long[] allocateIds(int count) {
+        var ids = new long[count];
+        int n = 0;
+        while (n < count) {
+            int blocks = (count - n + User.ID_ALLOCATION_SIZE - 1) / User.ID_ALLOCATION_SIZE;
+            var values = jdbcTemplate.queryForList("select nextval('users_seq') from generate_series(1, ?)", Long.class, blocks);
+            for (long last : values) {
+                for (long id = Math.max(1, last - User.ID_ALLOCATION_SIZE + 1); id <= last && n < count; id++) {
+                    ids[n++] = id;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * check does the db supports COPY
+     *
+     * @return true if COPY is enabled and the db is PostgreSQL
+     */
+    private boolean isCopySupported() {
+        return userProperties.getImport().isCopyEnabled() && Boolean.TRUE.equals(
+                jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class))
+        );
+    }
+
+    /**
+     * expiry of imports: never while the import is running, the status ttl after it is finished
+     */
+    private class FinishedJobExpiry implements Expiry<String, ImportJob> {
+
+        @Override
+        public long expireAfterCreate(String id, ImportJob job, long currentTime) {
+            return job.getStatus() == ImportJob.Status.RUNNING
+                    ? Long.MAX_VALUE : userProperties.getImport().getStatusTtl().toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, ImportJob job, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, job, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String id, ImportJob job, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * one row of the file
+     */
+    private static final class Row {
+
+        private final long line;
+        private final User user;
+        private List<Violation> violations;
+
+        /**
+         * @param line       - line number in the file
+         * @param user       - parsed user, null if the row is not parsed
+         * @param violations - parse violations
+         */
+        private Row(long line, User user, List<Violation> violations) {
+            this.line = line;
+            this.user = user;
+            this.violations = violations;
+        }
+    }
+
+    /**
+     * line of the rejection file
+     *
+     * @param line       - line number in the file
+     * @param violations - violations of the row
+     */
+    private record Rejection(long line, List<Violation> violations) {
+    }
+
+    /**
+     * reader of rows from the file
+     */
+    private interface RowReader {
+
+        /**
+         * read the next row
+         *
+         * @return row or null at the end of the file
+         * @throws IOException if the file is not read or it is incorrect
+         */
+        Row next() throws IOException;
+    }
+
+    /**
+     * reads one json user per line, blank lines are skipped
+     */
+    private class NdjsonRows implements RowReader {
+
+        private final BufferedReader reader;
+        private long line;
+
+        NdjsonRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String value;
+            do {
+                value = reader.readLine();
+                line++;
+            } while (value != null && value.isBlank());
+            if (value == null) {
+                return null;
+            }
+
+            UserDTO userDTO;
+            try {
+                userDTO = objectMapper.readValue(value, UserDTO.class);
+            } catch (IOException e) {
+                return new Row(line, null, List.of(new Violation("user", "Error. Incorrect json")));
+            }
+            if (userDTO == null) {
+                return new Row(line, null, List.of(new Violation("user", "Error. User data is required")));
+            }
+            return new Row(line, userMapper.toUser(userDTO), List.of());
+        }
+    }
+
+    /**
+     * reads users from csv with a header line of user fields, id and version columns are ignored
+     */
+    private class CsvRows implements RowReader {
+
+        private final Csv.RecordReader reader;
+        private final List<String> header;
+
+        CsvRows(BufferedReader reader) throws IOException {
+            this.reader = new Csv.RecordReader(reader);
+            this.header = this.reader.next();
+            if (header == null) {
+                throw new InvalidRequestException("Error. The file is empty");
+            }
+            for (var field : header) {
+                if (!UserFieldsRepository.FIELDS.contains(field)) {
+                    throw new InvalidRequestException("Error. Incorrect field: " + field);
+                }
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            List<String> values;
+            do {
+                values = reader.next();
+            } while (values != null && values.size() == 1 && values.get(0) == null);
+            if (values == null) {
+                return null;
+            }
+
+            long line = reader.getRecordLine();
+            if (values.size() != header.size()) {
+                return new Row(line, null, List.of(new Violation("user", "Error. Incorrect count of values")));
+            }
+
+            var user = new User();
+            var violations = new ArrayList<Violation>();
+            for (int i = 0; i < values.size(); i++) {
+                if (!IGNORED_COLUMNS.contains(header.get(i))) {
+                    var violation = userFieldRegistry.trySet(user, header.get(i), values.get(i));
+                    if (violation != null) {
+                        violations.add(violation);
+                    }
+                }
+            }
+            return violations.isEmpty() ? new Row(line, user, List.of()) : new Row(line, null, violations);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.config.UserProperties;
+import com.example.users_test_task.exception.InvalidRequestException;
+import com.example.users_test_task.exception.ValidationException;
+import com.example.users_test_task.exception.VersionConflictException;
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.repository.UserFieldsUpdate;
+import com.example.users_test_task.repository.UserRepository;
+import jakarta.persistence.PersistenceException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * batch partial updates of users. Every item has a user id, an optional expected version and a patch:
+ * a JSON Merge Patch (RFC 7396) object of fields or a JSON Patch (RFC 6902) array of add, replace and remove
+ * operations. Items are applied in chunks of users.patch.chunk-size: the users of a chunk are loaded with one
+ * IN query, patches are validated in memory with the same rules as updateFields, and only the changed columns
+ * of every user are written in one transaction per chunk. Users of a chunk with the same set of changed columns
+ * are written with one JDBC batch of versioned UPDATE statements, and the version check of every user is read
+ * from its update count in the batch. If the db refuses the chunk, its patches are applied one by one.
+ * It writes the db directly, so it is not created with the memory storage
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "users", name = "storage", havingValue = "jpa", matchIfMissing = true)
+public class UserPatchService {
+
+    private static final String VERSION_CHANGED = "Error. The user was changed by another request";
+
+    private final UserService userService;
+    private final UserRepository userRepository;
+    private final UserFieldRegistry userFieldRegistry;
+    private final EmailIndex emailIndex;
+    private final UserCache userCache;
+    private final UserStatsSummary userStatsSummary;
+    private final TransactionTemplate transactionTemplate;
+    private final UserProperties userProperties;
+
+    /**
+     * apply patches to users
+     *
+     * @param items - items with id, optional version and patch
+     * @return result of every item in the order of items
+     * @throws IllegalArgumentException if the list is empty
+     */
+    public List<ItemResult> patchAll(List<Map<String, Object>> items) throws IllegalArgumentException {
+        if (items == null || items.isEmpty()) {
+            throw new InvalidRequestException("Error. The list of patches is empty");
+        }
+
+        var results = new ItemResult[items.size()];
+        var patches = new ArrayList<Patch>(items.size());
+        var ids = new HashSet<Long>();
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                var patch = parse(i, items.get(i));
+                if (!ids.add(patch.id)) {
+                    throw new InvalidRequestException("Error. Duplicate id in the list of patches: " + patch.id);
+                }
+                patches.add(patch);
+            } catch (IllegalArgumentException e) {
+                results[i] = new ItemResult(i, null, List.of(new Violation("patch", e.getMessage())));
+            }
+        }
+
+        int chunkSize = userProperties.getPatch().getChunkSize();
+        for (int from = 0; from < patches.size(); from += chunkSize) {
+            var chunk = patches.subList(from, Math.min(from + chunkSize, patches.size()));
+            List<Patch> retries;
+            try {
+                retries = transactionTemplate.execute(status -> applyChunk(chunk, results));
+            } catch (DataIntegrityViolationException | OptimisticLockingFailureException | PersistenceException e) {
+                // the db refused a write of the chunk, it is rolled back, so its patches are applied one by one
+                retries = chunk;
+            }
+            for (var patch : retries) {
+                results[patch.index] = applyOne(patch);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * apply a chunk of patches in the current transaction
+     *
+     * @param chunk   - patches with different ids
+     * @param results - results to fill
+     * @return patches without an expected version whose users are changed by a concurrent write,
+     * they are applied again after the chunk
+     */
+    private List<Patch> applyChunk(List<Patch> chunk, ItemResult[] results) {
+        var users = userRepository.findAllById(chunk.stream().map(patch -> patch.id).toList()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        var updates = new LinkedHashMap<Patch, User>();
+        for (var patch : chunk) {
+            var violations = new ArrayList<Violation>();
+            var user = users.get(patch.id);
+            if (user == null) {
+                violations.add(new Violation("id", "Error. No user with this ID found"));
+            } else if (patch.version != null && !patch.version.equals(user.getVersion())) {
+                violations.add(new Violation("version", VERSION_CHANGED));
+            } else {
+                var updated = new User();
+                updated.copy(user);
+                for (var field : patch.fields.entrySet()) {
+                    var violation = userFieldRegistry.trySet(updated, field.getKey(), field.getValue());
+                    if (violation != null) {
+                        violations.add(violation);
+                    }
+                }
+                violations.addAll(userService.validateUser(updated, false));
+                if (violations.isEmpty()) {
+                    updates.put(patch, updated);
+                }
+            }
+            results[patch.index] = new ItemResult(patch.index, null, violations);
+        }
+
+        rejectUsedEmails(updates, users, results);
+
+        var writes = new LinkedHashMap<List<String>, List<Write>>();
+        for (var update : updates.entrySet()) {
+            var patch = update.getKey();
+            var before = users.get(patch.id);
+            var user = update.getValue();
+            var changes = UserService.getChanges(before, user);
+            if (changes.isEmpty()) {
+                results[patch.index] = new ItemResult(patch.index, user, List.of());
+            } else {
+                writes.computeIfAbsent(List.copyOf(changes.keySet()), fields -> new ArrayList<>())
+                        .add(new Write(patch, before, user, changes));
+            }
+        }
+
+        var retries = new ArrayList<Patch>();
+        for (var group : writes.entrySet()) {
+            write(group.getKey(), group.getValue(), results, retries);
+        }
+        return retries;
+    }
+
+    /**
+     * write only the changed fields of users with the same changed fields in one batch, every user is written
+     * if its version is still the same one
+     *
+     * @param fields  - changed fields
+     * @param writes  - patched and validated users, their versions are incremented if they are written
+     * @param results - results to fill
+     * @param retries - patches without an expected version whose users are changed by a concurrent write
+     */
+    private void write(List<String> fields, List<Write> writes, ItemResult[] results, List<Patch> retries) {
+        var updates = new ArrayList<UserFieldsUpdate>(writes.size());
+        for (var write : writes) {
+            if (write.changes.containsKey("email")) {
+                emailIndex.add(write.user.getEmail());
+            }
+            updates.add(new UserFieldsUpdate(write.user.getId(), write.before.getVersion(), write.changes));
+        }
+
+        var counts = userRepository.updateUsersFields(fields, updates);
+        for (int i = 0; i < writes.size(); i++) {
+            var write = writes.get(i);
+            var patch = write.patch;
+            var user = write.user;
+            userCache.evict(user.getId());
+            if (counts[i] == 0) {
+                if (patch.version != null) {
+                    results[patch.index] = new ItemResult(patch.index, null, List.of(new Violation("version", VERSION_CHANGED)));
+                } else {
+                    retries.add(patch);
+                }
+                continue;
+            }
+
+            user.setVersion(write.before.getVersion() == null ? 1 : write.before.getVersion() + 1);
+            if (write.changes.containsKey("dateOfBirth")) {
+                userStatsSummary.put(user.getId(), user.getDateOfBirth());
+            }
+            results[patch.index] = new ItemResult(patch.index, user, List.of());
+        }
+    }
+
+    /**
+     * reject the updates which set an email used by another user or by another update of the chunk
+     *
+     * @param updates - valid updates
+     * @param users   - users before the updates by id
+     * @param results - results to fill
+     */
+    private void rejectUsedEmails(Map<Patch, User> updates, Map<Long, User> users, ItemResult[] results) {
+        var changed = new LinkedHashMap<String, Patch>();
+        var rejected = new ArrayList<Patch>();
+        for (var update : updates.entrySet()) {
+            var email = update.getValue().getEmail();
+            if (!email.equals(users.get(update.getKey().id).getEmail()) && changed.putIfAbsent(email, update.getKey()) != null) {
+                rejected.add(update.getKey());
+            }
+        }
+        if (!changed.isEmpty()) {
+            for (var email : userRepository.findExistingEmails(changed.keySet())) {
+                rejected.add(changed.get(email));
+            }
+        }
+
+        for (var patch : rejected) {
+            updates.remove(patch);
+            results[patch.index] = new ItemResult(patch.index, null, List.of(new Violation("email", UserService.EMAIL_USED)));
+        }
+    }
+
+    /**
+     * apply one patch in its own transaction
+     *
+     * @param patch - patch
+     * @return result of the patch
+     */
+    private ItemResult applyOne(Patch patch) {
+        var fields = new LinkedHashMap<String, Object>();
+        fields.put("id", patch.id);
+        fields.putAll(patch.fields);
+        try {
+            return new ItemResult(patch.index, userService.updateFields(fields, patch.version), List.of());
+        } catch (ValidationException e) {
+            return new ItemResult(patch.index, null, e.getViolations());
+        } catch (VersionConflictException e) {
+            return new ItemResult(patch.index, null, List.of(new Violation("version", VERSION_CHANGED)));
+        } catch (IllegalArgumentException e) {
+            return new ItemResult(patch.index, null, List.of(new Violation("patch", e.getMessage())));
+        }
+    }
+
+    /**
+     * parse one item of the request
+     *
+     * @param index - item position in the request
+     * @param item  - item with id, optional version and patch
+     * @return parsed patch
+     * @throws IllegalArgumentException if the item is incorrect
+     */
+    private Patch parse(int index, Map<String, Object> item) throws IllegalArgumentException {
+        if (item == null || !item.containsKey("id")) {
+            throw new InvalidRequestException("Error. Incorrect input data. The patch must have id");
+        }
+
+        var id = userFieldRegistry.toId(item.get("id"));
+        var version = item.get("version") == null ? null : userFieldRegistry.toId(item.get("version"));
+        var value = item.get("patch");
+        Map<String, Object> fields;
+        if (value instanceof Map<?, ?> mergePatch) {
+            fields = new LinkedHashMap<>();
+            for (var field : mergePatch.entrySet()) {
+                fields.put(String.valueOf(field.getKey()), field.getValue());
+            }
+        } else if (value instanceof List<?> operations) {
+            fields = toFields(operations);
+        } else {
+            throw new InvalidRequestException("Error. The patch must be a JSON Merge Patch object or a JSON Patch array");
+        }
+        return new Patch(index, id, version, fields);
+    }
+
+    /**
+     * convert JSON Patch operations to new values of fields
+     *
+     * @param operations - add, replace and remove operations with paths like /firstName
+     * @return new values by field name
+     * @throws IllegalArgumentException if an operation is not supported
+     */
+    private static Map<String, Object> toFields(List<?> operations) throws IllegalArgumentException {
+        var fields = new LinkedHashMap<String, Object>();
+        for (var item : operations) {
+            if (!(item instanceof Map<?, ?> operation) || !(operation.get("path") instanceof String path)
+                    || !path.startsWith("/")) {
+                throw new InvalidRequestException("Error. Incorrect patch operation: " + item);
+            }
+
+            var field = path.substring(1);
+            var op = String.valueOf(operation.get("op"));
+            switch (op) {
+                case "add", "replace" -> fields.put(field, operation.get("value"));
+                case "remove" -> fields.put(field, null);
+                default -> throw new InvalidRequestException("Error. Unsupported patch operation: " + op);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * parsed item of the request
+     *
+     * @param index   - item position in the request
+     * @param id      - user id
+     * @param version - expected user version, null if any version can be updated
+     * @param fields  - new values by field name
+     */
+    private record Patch(int index, Long id, Long version, Map<String, Object> fields) {
+    }
+
+    /**
+     * write of one patched user
+     *
+     * @param patch   - patch
+     * @param before  - user before the patch
+     * @param user    - patched and validated user
+     * @param changes - new values of the changed fields
+     */
+    private record Write(Patch patch, User before, User user, Map<String, Object> changes) {
+    }
+}
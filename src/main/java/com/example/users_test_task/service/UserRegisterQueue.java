@@ -0,0 +1,396 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.config.UserProperties;
+import com.example.users_test_task.dto.RegisterStatusDTO;
+import com.example.users_test_task.dto.UserDTO;
+import com.example.users_test_task.exception.InvalidRequestException;
+import com.example.users_test_task.exception.QueueFullException;
+import com.example.users_test_task.exception.ValidationException;
+import com.example.users_test_task.mapper.UserMapper;
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * write-behind registration. A user is validated with the same rules as register, its email is reserved
+ * in memory and the user is put to a bounded queue, so the client gets a tracking id without waiting for db.
+ * One writer thread takes users from the queue and inserts them in batches of users.register-queue.batch-size,
+ * waiting at most users.register-queue.flush-interval for a batch to be filled. A user is rejected only if the db
+ * refuses it, other db errors are retried with a backoff up to users.register-queue.max-retry-delay, while the queue
+ * fills up and new users get 429. Results are kept for users.register-queue.status-ttl.
+ * Users still in the queue are written on shutdown with one attempt.
+ * With users.register-queue.journal-enabled every accepted user is synced to a local journal before the response,
+ * and the users which are not written to db yet are queued again on the next start.
+ * It writes the db directly, so it is not created with the memory storage
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "users", name = "storage", havingValue = "jpa", matchIfMissing = true)
+public class UserRegisterQueue {
+
+    private static final int IN_QUERY_CHUNK_SIZE = 1000;
+    private static final String QUEUED = "queued";
+    private static final String SAVED = "saved";
+    private static final String REJECTED = "rejected";
+
+    private final UserService userService;
+    private final UserRepository userRepository;
+    private final UserMapper userMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final UserProperties userProperties;
+    private final ReservedEmails reservedEmails;
+
+    private BlockingQueue<Registration> queue;
+    private Cache<String, RegisterStatusDTO> statuses;
+    private volatile Thread writer;
+    private RegisterJournal journal;
+
+    /**
+     * create the queue and the status cache
+     */
+    @PostConstruct
+    public void init() {
+        var properties = userProperties.getRegisterQueue();
+        queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        statuses = Caffeine.newBuilder().expireAfterWrite(properties.getStatusTtl()).build();
+        meterRegistry.gaugeCollectionSize("users.register.queue.size", List.of(), queue);
+        if (properties.isEnabled()) {
+            startWriter();
+        }
+    }
+
+    /**
+     * validate the user and put it to the queue
+     *
+     * @param userDTO - user data
+     * @return status of the accepted registration
+     * @throws IllegalArgumentException if the queue is disabled
+     * @throws ValidationException      if something is wrong on validation
+     * @throws QueueFullException       if the queue is full
+     */
+    public RegisterStatusDTO submit(UserDTO userDTO) throws IllegalArgumentException, ValidationException {
+        if (!userProperties.getRegisterQueue().isEnabled()) {
+            throw new InvalidRequestException("Error. The asynchronous registration is disabled");
+        }
+        if (writer == null) {
+            startWriter();
+        }
+
+        var user = userMapper.toUser(userDTO);
+        user.setId(null);
+        var violations = userService.validateUser(user, true);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations);
+        }
+        if (!reservedEmails.reserve(user.getEmail())) {
+            throw new ValidationException(List.of(new Violation("email", UserService.EMAIL_USED)));
+        }
+
+        // the user is queued only after it is synced to the journal, so the writer does not insert a user
+        // whose registration failed
+        var status = new RegisterStatusDTO(UUID.randomUUID().toString(), QUEUED, null, List.of());
+        if (journal != null) {
+            try {
+                journal.sync(journal.append(status.id(), user));
+            } catch (IOException e) {
+                reservedEmails.release(user.getEmail());
+                done(status.id());
+                throw new UncheckedIOException(e);
+            }
+        }
+        statuses.put(status.id(), status);
+        if (!queue.offer(new Registration(status.id(), user))) {
+            statuses.invalidate(status.id());
+            reservedEmails.release(user.getEmail());
+            done(status.id());
+            throw new QueueFullException("Error. Too many registrations, try again later");
+        }
+        return status;
+    }
+
+    /**
+     * get the result of a registration
+     *
+     * @param id - tracking id
+     * @return registration status
+     * @throws IllegalArgumentException if the id is unknown or expired
+     */
+    public RegisterStatusDTO getStatus(String id) throws IllegalArgumentException {
+        var status = id == null ? null : statuses.getIfPresent(id);
+        if (status == null) {
+            throw new InvalidRequestException("Error. No registration with this ID found");
+        }
+        return status;
+    }
+
+    /**
+     * stop the writer and write the users left in the queue
+     *
+     * @throws InterruptedException if the shutdown is interrupted
+     */
+    @PreDestroy
+    public synchronized void shutdown() throws InterruptedException {
+        if (writer != null) {
+            writer.interrupt();
+            writer.join();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("Error closing the register journal", e);
+            }
+        }
+    }
+
+    /**
+     * open the journal and start the writer thread on startup, or on the first registration if the queue
+     * is enabled later. Users from the journal are queued again, except the ones which are already in db
+     */
+    private synchronized void startWriter() {
+        if (writer != null) {
+            return;
+        }
+
+        var properties = userProperties.getRegisterQueue();
+        var recovered = new ArrayList<Registration>();
+        if (properties.isJournalEnabled()) {
+            if (properties.getJournalDir() == null || properties.getJournalDir().isBlank()) {
+                throw new IllegalStateException("Error. users.register-queue.journal-dir is not set");
+            }
+            journal = new RegisterJournal(Path.of(properties.getJournalDir()),
+                    (int) properties.getJournalSegmentSize().toBytes(), objectMapper);
+            try {
+                recover(journal.open(), recovered);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        writer = new Thread(this::run, "users-register-writer");
+        writer.start();
+        for (var registration : recovered) {
+            try {
+                queue.put(registration);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (!recovered.isEmpty()) {
+            log.info("{} registrations are queued again from the journal", recovered.size());
+        }
+    }
+
+    /**
+     * mark the registrations from the journal whose emails are already in db as done, they were written
+     * before the shutdown
+     *
+     * @param pending   - users from the journal by tracking id
+     * @param recovered - registrations to queue again
+     * @throws IOException if the journal is not written
+     */
+    private void recover(Map<String, User> pending, List<Registration> recovered) throws IOException {
+        var ids = new ArrayList<>(pending.keySet());
+        for (int from = 0; from < ids.size(); from += IN_QUERY_CHUNK_SIZE) {
+            var chunk = ids.subList(from, Math.min(from + IN_QUERY_CHUNK_SIZE, ids.size()));
+            var existing = userRepository.findExistingEmails(chunk.stream().map(id -> pending.get(id).getEmail()).toList());
+            for (var id : chunk) {
+                var user = pending.get(id);
+                if (existing.contains(user.getEmail()) || !reservedEmails.reserve(user.getEmail())) {
+                    journal.done(id);
+                } else {
+                    user.setId(null);
+                    user.setVersion(null);
+                    statuses.put(id, new RegisterStatusDTO(id, QUEUED, null, List.of()));
+                    recovered.add(new Registration(id, user));
+                }
+            }
+        }
+    }
+
+    /**
+     * take batches from the queue and write them until the thread is interrupted
+     */
+    private void run() {
+        var properties = userProperties.getRegisterQueue();
+        var batch = new ArrayList<Registration>(properties.getBatchSize());
+        try {
+            while (true) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + properties.getFlushInterval().toNanos();
+                while (batch.size() < properties.getBatchSize()) {
+                    queue.drainTo(batch, properties.getBatchSize() - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= properties.getBatchSize() || left <= 0) {
+                        break;
+                    }
+                    var next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                writeWithRetry(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            queue.drainTo(batch);
+            for (int from = 0; from < batch.size(); from += properties.getBatchSize()) {
+                var registrations = new ArrayList<>(batch.subList(from, Math.min(from + properties.getBatchSize(), batch.size())));
+                try {
+                    write(registrations);
+                } catch (RuntimeException writeException) {
+                    log.error("Error writing {} registrations on shutdown", registrations.size(), writeException);
+                    notWritten(registrations);
+                }
+            }
+        }
+    }
+
+    /**
+     * write the batch, db errors which are not a refused user are retried with an exponential backoff
+     *
+     * @param batch - registrations
+     * @throws InterruptedException if the writer is stopped while it waits for a retry,
+     *                              the registrations which are not written are left in the batch
+     */
+    private void writeWithRetry(List<Registration> batch) throws InterruptedException {
+        var properties = userProperties.getRegisterQueue();
+        var left = new ArrayList<>(batch);
+        long delay = properties.getRetryDelay().toMillis();
+        while (true) {
+            try {
+                write(left);
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Error writing {} registrations, retry in {} ms", left.size(), delay, e);
+                batch.retainAll(left);
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, properties.getMaxRetryDelay().toMillis());
+            }
+        }
+    }
+
+    /**
+     * insert a batch in one transaction. If the db refuses it, e.g. an email is used by a user registered
+     * in the meantime, the users of the batch are inserted one by one
+     *
+     * @param batch - registrations, the written and rejected ones are removed
+     * @throws RuntimeException if the db fails, the registrations left in the batch are not written
+     */
+    private void write(List<Registration> batch) throws RuntimeException {
+        for (var registration : batch) {
+            registration.user().setId(null);
+            registration.user().setVersion(null);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    userRepository.saveAllAndFlush(batch.stream().map(Registration::user).toList()));
+            batch.forEach(this::saved);
+            batch.clear();
+        } catch (DataIntegrityViolationException e) {
+            var iterator = batch.iterator();
+            while (iterator.hasNext()) {
+                writeOne(iterator.next());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * insert one user in its own transaction, it is rejected if the db refuses it
+     *
+     * @param registration - registration
+     * @throws RuntimeException if the db fails, the user is not written
+     */
+    private void writeOne(Registration registration) throws RuntimeException {
+        var user = registration.user();
+        user.setId(null);
+        user.setVersion(null);
+        try {
+            transactionTemplate.executeWithoutResult(status -> userRepository.saveAndFlush(user));
+            saved(registration);
+        } catch (DataIntegrityViolationException e) {
+            rejected(registration, DataIntegrity.toViolation(e));
+        }
+    }
+
+    /**
+     * the registrations could not be written on shutdown. With the journal they stay open and are queued again
+     * on the next start, otherwise they are lost and rejected
+     *
+     * @param registrations - registrations
+     */
+    private void notWritten(List<Registration> registrations) {
+        if (journal != null) {
+            log.warn("{} registrations are left in the journal until the next start", registrations.size());
+            return;
+        }
+        for (var registration : registrations) {
+            rejected(registration, new Violation("user", "Error. The user is not saved"));
+        }
+    }
+
+    private void saved(Registration registration) {
+        statuses.put(registration.id(), new RegisterStatusDTO(registration.id(), SAVED, registration.user().getId(), List.of()));
+        reservedEmails.release(registration.user().getEmail());
+        done(registration.id());
+    }
+
+    private void rejected(Registration registration, Violation violation) {
+        statuses.put(registration.id(), new RegisterStatusDTO(registration.id(), REJECTED, null, List.of(violation)));
+        reservedEmails.release(registration.user().getEmail());
+        done(registration.id());
+    }
+
+    /**
+     * mark the registration as done in the journal, so it is not queued again on the next start
+     *
+     * @param id - tracking id
+     */
+    private void done(String id) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.done(id);
+        } catch (IOException e) {
+            log.error("Error marking the registration {} as done in the journal", id, e);
+        }
+    }
+
+    /**
+     * accepted user waiting for the write
+     *
+     * @param id   - tracking id
+     * @param user - validated user
+     */
+    private record Registration(String id, User user) {
+    }
+}
@@ -1,21 +1,30 @@
 package com.example.users_test_task.service;
 
+import com.example.users_test_task.config.UserProperties;
 import com.example.users_test_task.dto.UserDTO;
+import com.example.users_test_task.dto.UsersPageDTO;
+import com.example.users_test_task.dto.UsersStatsDTO;
+import com.example.users_test_task.exception.InvalidRequestException;
 import com.example.users_test_task.exception.ValidationException;
+import com.example.users_test_task.exception.VersionConflictException;
 import com.example.users_test_task.mapper.UserMapper;
 import com.example.users_test_task.model.User;
-import com.example.users_test_task.repository.UserRepository;
+import com.example.users_test_task.repository.UserFieldsRepository;
+import com.example.users_test_task.repository.UserStorage;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.retry.annotation.Retryable;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.lang.reflect.Field;
 import java.time.LocalDate;
-import java.time.Period;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.time.MonthDay;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * service for working with user entities and db
@@ -25,9 +34,34 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserService {
 
-    private final UserRepository userRepository;
+    private final UserStorage userStorage;
     private final UserMapper userMapper;
     private final ValidationService validationService;
+    private final UserFieldRegistry userFieldRegistry;
+    private final EmailIndex emailIndex;
+    private final ReservedEmails reservedEmails;
+    private final UserCache userCache;
+    private final UserProperties userProperties;
+    private final MeterRegistry meterRegistry;
+    private final AgeCutoff ageCutoff;
+    private final UserStatsSummary userStatsSummary;
+
+    /**
+     * max count of values in one IN query
+     */
+    private static final int IN_QUERY_CHUNK_SIZE = 1000;
+
+    /**
+     * size of age buckets in years if the client did not send one
+     */
+    private static final int DEFAULT_AGE_BUCKET_SIZE = 10;
+
+    static final String EMAIL_USED = "Error. This email is already used";
+    private static final String TOO_YOUNG = "Error. I'm sorry, but you're too young";
+    private static final String FUTURE_DATE = "Error. The date cannot be the future";
+
+    private static final int FIRST_MONTH_DAY = 101;
+    private static final int LAST_MONTH_DAY = 1231;
 
     /**
      * save user in db
@@ -37,14 +71,141 @@ public class UserService {
      * @throws IllegalArgumentException if something is wrong
      * @throws ValidationException      if something is wrong on validation
      */
-    @Transactional(isolation = Isolation.REPEATABLE_READ)
-    @Retryable(maxAttempts = 5)
+    @Transactional(rollbackFor = ValidationException.class)
+    @RetryableWrite
     public User save(UserDTO userDTO) throws IllegalArgumentException, ValidationException {
         var user = userMapper.toUser(userDTO);
-        validationService.isValidUser(user);
-        isAgeValid(user.getDateOfBirth());
-        isEmailNotExist(user.getEmail());
-        return userRepository.save(user);
+        user.setId(null);
+        throwIfInvalid(validateUser(user, true));
+        return saveUnique(user);
+    }
+
+    /**
+     * save a list of users in db with one uniqueness query and batched inserts in one transaction.
+     * If the db refuses the batch, e.g. an email is saved by a concurrent write, the users are saved
+     * one by one, each in its own transaction, and every failed user gets its own violation
+     *
+     * @param userDTOs - users data
+     * @return a list of results in the same order as the input
+     * @throws IllegalArgumentException if the list is empty
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ItemResult> saveAll(List<UserDTO> userDTOs) throws IllegalArgumentException {
+        if (userDTOs == null || userDTOs.isEmpty()) {
+            throw new InvalidRequestException("Error. The list of users is empty");
+        }
+
+        var results = new ItemResult[userDTOs.size()];
+        var candidates = new LinkedHashMap<String, Integer>();
+        var users = new User[userDTOs.size()];
+
+        for (int i = 0; i < userDTOs.size(); i++) {
+            if (userDTOs.get(i) == null) {
+                results[i] = new ItemResult(i, null, List.of(new Violation("user", "Error. User data is required")));
+                continue;
+            }
+
+            var user = userMapper.toUser(userDTOs.get(i));
+            user.setId(null);
+
+            var violations = validateUser(user, false);
+            if (violations.isEmpty() && (reservedEmails.isReserved(user.getEmail())
+                    || candidates.putIfAbsent(user.getEmail(), i) != null)) {
+                violations.add(new Violation("email", EMAIL_USED));
+            }
+
+            if (violations.isEmpty()) {
+                users[i] = user;
+            } else {
+                results[i] = new ItemResult(i, null, violations);
+            }
+        }
+
+        var emails = new ArrayList<String>(candidates.size());
+        for (var email : candidates.keySet()) {
+            if (emailIndex.mightContain(email)) {
+                emails.add(email);
+            }
+        }
+        for (int from = 0; from < emails.size(); from += IN_QUERY_CHUNK_SIZE) {
+            var chunk = emails.subList(from, Math.min(from + IN_QUERY_CHUNK_SIZE, emails.size()));
+            for (var email : userStorage.findExistingEmails(chunk)) {
+                int i = candidates.get(email);
+                users[i] = null;
+                results[i] = new ItemResult(i, null, List.of(new Violation("email", EMAIL_USED)));
+            }
+        }
+
+        var toSave = new ArrayList<User>(candidates.size());
+        for (var user : users) {
+            if (user != null) {
+                toSave.add(user);
+            }
+        }
+        try {
+            userStorage.saveAll(toSave);
+        } catch (DataIntegrityViolationException e) {
+            saveOneByOne(users, results);
+        }
+
+        for (int i = 0; i < users.length; i++) {
+            if (users[i] != null) {
+                results[i] = new ItemResult(i, users[i], List.of());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * save the users of a refused batch one by one. The batch is rolled back, so the ids and versions
+     * assigned to it are cleared first
+     *
+     * @param users   - users to save by index, null if the item is already rejected
+     * @param results - results by index, the failed users are set here and removed from @param users
+     */
+    private void saveOneByOne(User[] users, ItemResult[] results) {
+        for (int i = 0; i < users.length; i++) {
+            if (users[i] == null) {
+                continue;
+            }
+
+            users[i].setId(null);
+            users[i].setVersion(null);
+            try {
+                users[i] = userStorage.save(users[i]);
+            } catch (DataIntegrityViolationException e) {
+                users[i] = null;
+                results[i] = new ItemResult(i, null, List.of(DataIntegrity.toViolation(e)));
+            }
+        }
+    }
+
+    /**
+     * get user by id
+     *
+     * @param id - user id
+     * @return user entity
+     * @throws IllegalArgumentException if the user is not found
+     */
+    @Transactional(readOnly = true)
+    public User getUser(Long id) throws IllegalArgumentException {
+        return userCache.findById(id).orElseThrow(
+                () -> new InvalidRequestException("Error. No user with this ID found")
+        );
+    }
+
+    /**
+     * get user by email
+     *
+     * @param email - user email
+     * @return user entity
+     * @throws IllegalArgumentException if the user is not found
+     */
+    @Transactional(readOnly = true)
+    public User getUserByEmail(String email) throws IllegalArgumentException {
+        return userCache.findUserByEmail(email).orElseThrow(
+                () -> new InvalidRequestException("Error. No user with this email found")
+        );
     }
 
     /**
@@ -55,40 +216,52 @@ public class UserService {
      * @throws IllegalArgumentException if something is wrong
      * @throws ValidationException      if something is wrong on validation
      */
-    @Transactional(isolation = Isolation.REPEATABLE_READ)
-    @Retryable(maxAttempts = 5)
+    @Transactional(rollbackFor = ValidationException.class)
+    @RetryableWrite
     public User updateFields(LinkedHashMap<String, Object> fields) throws IllegalArgumentException, ValidationException {
-        if (!fields.containsKey("id") && !fields.keySet().toArray()[0].equals("id")) {
-            throw new IllegalArgumentException("Error. Incorrect input data. The input data must have id. And id must to be in the first place");
+        return updateFields(fields, null);
+    }
+
+    /**
+     * update some fields in user entity if the user version is the expected one
+     *
+     * @param fields          - fields to update
+     * @param expectedVersion - user version known by the client, null to skip the check
+     * @return updated user entity from db
+     * @throws IllegalArgumentException  if something is wrong
+     * @throws ValidationException       if something is wrong on validation
+     * @throws VersionConflictException if the user was changed after the expected version
+     */
+    @Transactional(rollbackFor = ValidationException.class)
+    @RetryableWrite
+    public User updateFields(LinkedHashMap<String, Object> fields, Long expectedVersion)
+            throws IllegalArgumentException, ValidationException, VersionConflictException {
+        if (!fields.containsKey("id")) {
+            throw new InvalidRequestException("Error. Incorrect input data. The input data must have id. And id must to be in the first place");
         }
 
-        var userToUpdate = userRepository.findById(Long.valueOf((Integer) fields.get("id"))).orElseThrow(
-                () -> new IllegalArgumentException("Error. No user with this ID found")
+        var userToUpdate = userCache.findById(userFieldRegistry.toId(fields.get("id"))).orElseThrow(
+                () -> new InvalidRequestException("Error. No user with this ID found")
         );
 
         var user = new User();
         user.copy(userToUpdate);
+        isVersionValid(user, expectedVersion);
 
-        isEmailNotExist((String) fields.get("email"));
-
-        for (var field : fields.keySet()) {
-            if (field.equals("id")) {
-                continue;
-            }
-            try {
-                Field declaredField = user.getClass().getDeclaredField(field);
-                declaredField.setAccessible(true);
-                declaredField.set(user, fields.get(field));
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                throw new IllegalArgumentException("Error. Incorrect field: " + field);
+        var violations = new ArrayList<Violation>();
+        for (var field : fields.entrySet()) {
+            if (!field.getKey().equals("id")) {
+                var violation = userFieldRegistry.trySet(user, field.getKey(), field.getValue());
+                if (violation != null) {
+                    violations.add(violation);
+                }
             }
         }
 
-        validationService.isValidUser(user);
-        isAgeValid(user.getDateOfBirth());
-        isDataValid(user.getDateOfBirth());
+        violations.addAll(validateUser(user, fields.containsKey("email")));
+        throwIfInvalid(violations);
 
-        return userRepository.save(user);
+        return updateChanged(userToUpdate, user, expectedVersion);
     }
 
     /**
@@ -98,15 +271,31 @@ public class UserService {
      * @throws IllegalArgumentException if something is wrong
      * @throws ValidationException      if something is wrong on validation
      */
-    @Transactional(isolation = Isolation.REPEATABLE_READ)
-    @Retryable(maxAttempts = 5)
+    @Transactional(rollbackFor = ValidationException.class)
+    @RetryableWrite
     public User update(UserDTO updatedUserDTO) throws Exception {
-        var userToUpdate = userRepository.findById(updatedUserDTO.getId()).orElseThrow(
-                () -> new IllegalArgumentException("User not found exception")
+        return update(updatedUserDTO, null);
+    }
+
+    /**
+     * update user in db if the user version is the expected one
+     *
+     * @param updatedUserDTO  - user data to update
+     * @param expectedVersion - user version known by the client, null to skip the check
+     * @throws IllegalArgumentException  if something is wrong
+     * @throws ValidationException       if something is wrong on validation
+     * @throws VersionConflictException if the user was changed after the expected version
+     */
+    @Transactional(rollbackFor = ValidationException.class)
+    @RetryableWrite
+    public User update(UserDTO updatedUserDTO, Long expectedVersion) throws Exception {
+        var userToUpdate = userCache.findById(updatedUserDTO.getId()).orElseThrow(
+                () -> new InvalidRequestException("User not found exception")
         );
 
         var user = new User();
         user.copy(userToUpdate);
+        isVersionValid(user, expectedVersion);
 
         user.setEmail(updatedUserDTO.getEmail());
         user.setFirstName(updatedUserDTO.getFirstName());
@@ -115,12 +304,9 @@ public class UserService {
         user.setAddress(updatedUserDTO.getAddress());
         user.setPhoneNumber(updatedUserDTO.getPhoneNumber());
 
-        isEmailNotExist(user.getEmail());
-        validationService.isValidUser(user);
-        isAgeValid(user.getDateOfBirth());
-        isDataValid(user.getDateOfBirth());
+        throwIfInvalid(validateUser(user, true));
 
-        return userRepository.save(user);
+        return updateChanged(userToUpdate, user, expectedVersion);
     }
 
     /**
@@ -130,8 +316,8 @@ public class UserService {
      * @throws IllegalArgumentException if something is wrong
      */
     public void isAgeValid(LocalDate dateOfBirth) throws IllegalArgumentException {
-        if (dateOfBirth != null && Period.between(dateOfBirth, LocalDate.now()).getYears() < 18) {
-            throw new IllegalArgumentException("Error. I'm sorry, but you're too young");
+        if (!ageCutoff.isOldEnough(dateOfBirth)) {
+            throw new InvalidRequestException(TOO_YOUNG);
         }
     }
 
@@ -143,8 +329,179 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public void isEmailNotExist(String email) {
-        if (email != null && !email.isEmpty() && userRepository.findUserByEmail(email).isPresent()) {
-            throw new IllegalArgumentException("Error. This email is already used");
+        if (isEmailUsed(email)) {
+            throw new InvalidRequestException(EMAIL_USED);
+        }
+    }
+
+    /**
+     * validate user with bean validation and the date, age and email rules without throwing
+     *
+     * @param user       - user to validate
+     * @param checkEmail - check does the email is not used yet
+     * @return a modifiable list of violations, empty if user is valid
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<Violation> validateUser(User user, boolean checkEmail) {
+        var violations = validationService.validate(user);
+
+        if (!hasViolation(violations, "dateOfBirth")) {
+            if (isFuture(user.getDateOfBirth())) {
+                violations.add(new Violation("dateOfBirth", FUTURE_DATE));
+            } else if (!ageCutoff.isOldEnough(user.getDateOfBirth())) {
+                violations.add(new Violation("dateOfBirth", TOO_YOUNG));
+            }
+        }
+        if (checkEmail && !hasViolation(violations, "email") && isEmailUsed(user.getEmail())) {
+            violations.add(new Violation("email", EMAIL_USED));
+        }
+
+        return violations;
+    }
+
+    /**
+     * throw one exception with all violations if there are any
+     *
+     * @param violations - violations
+     * @throws ValidationException if the list is not empty
+     */
+    private static void throwIfInvalid(List<Violation> violations) throws ValidationException {
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations);
+        }
+    }
+
+    private static boolean hasViolation(List<Violation> violations, String property) {
+        for (var violation : violations) {
+            if (violation.property().equals(property)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * check does the date is in the future
+     *
+     * @param date - date
+     * @return true if the date is after today
+     */
+    private static boolean isFuture(LocalDate date) {
+        return date != null && date.isAfter(LocalDate.now());
+    }
+
+    /**
+     * check does the email is used by some user or reserved by a queued registration
+     *
+     * @param email - email
+     * @return true if the email is used
+     */
+    private boolean isEmailUsed(String email) {
+        var timer = meterRegistry.timer("users.email.check");
+        return Boolean.TRUE.equals(timer.record(() -> email != null && !email.isEmpty()
+                && (reservedEmails.isReserved(email)
+                || emailIndex.mightContain(email) && userCache.findUserByEmail(email).isPresent())));
+    }
+
+    /**
+     * check does the user has the version expected by the client. The expected version is set to the user,
+     * so the optimistic lock check on save compares it with the version in db
+     *
+     * @param user            - user to update
+     * @param expectedVersion - user version known by the client, null to skip the check
+     * @throws VersionConflictException if the versions are different
+     */
+    private void isVersionValid(User user, Long expectedVersion) throws VersionConflictException {
+        if (expectedVersion == null) {
+            return;
+        }
+        if (user.getVersion() != null && user.getVersion() > expectedVersion) {
+            throw new VersionConflictException();
+        }
+        user.setVersion(expectedVersion);
+    }
+
+    /**
+     * write only the fields which are changed, with one statement and without loading the entity.
+     * The update is applied only if the user version in db is still the same
+     *
+     * @param before          - user before the update
+     * @param user            - updated and validated user
+     * @param expectedVersion - version from the client, null if any version can be updated
+     * @return updated user
+     * @throws ValidationException      if the email is already used or the db does not accept the user
+     * @throws VersionConflictException if the expected version is not the current one
+     */
+    private User updateChanged(User before, User user, Long expectedVersion)
+            throws ValidationException, VersionConflictException {
+        var changes = getChanges(before, user);
+        if (changes.isEmpty()) {
+            return user;
+        }
+
+        if (changes.containsKey("email")) {
+            emailIndex.add(user.getEmail());
+        }
+        int updated;
+        try {
+            updated = userStorage.updateUserFields(user.getId(), user.getVersion(), changes);
+        } catch (DataIntegrityViolationException e) {
+            throw new ValidationException(List.of(DataIntegrity.toViolation(e)));
+        }
+
+        userCache.evict(user.getId());
+        if (updated == 0) {
+            if (expectedVersion != null) {
+                throw new VersionConflictException();
+            }
+            throw new ObjectOptimisticLockingFailureException(User.class, user.getId());
+        }
+
+        user.setVersion(user.getVersion() == null ? 1 : user.getVersion() + 1);
+        if (changes.containsKey("dateOfBirth")) {
+            userStatsSummary.put(user.getId(), user.getDateOfBirth());
+        }
+        return user;
+    }
+
+    /**
+     * get the fields which are different in the updated user
+     *
+     * @param before - user before the update
+     * @param user   - updated user
+     * @return new values by entity field name, empty if nothing is changed
+     */
+    static Map<String, Object> getChanges(User before, User user) {
+        var changes = new LinkedHashMap<String, Object>();
+        putIfChanged(changes, "email", before.getEmail(), user.getEmail());
+        putIfChanged(changes, "firstName", before.getFirstName(), user.getFirstName());
+        putIfChanged(changes, "lastName", before.getLastName(), user.getLastName());
+        putIfChanged(changes, "dateOfBirth", before.getDateOfBirth(), user.getDateOfBirth());
+        putIfChanged(changes, "birthMonthDay", before.getBirthMonthDay(), user.getBirthMonthDay());
+        putIfChanged(changes, "address", before.getAddress(), user.getAddress());
+        putIfChanged(changes, "phoneNumber", before.getPhoneNumber(), user.getPhoneNumber());
+        return changes;
+    }
+
+    private static void putIfChanged(Map<String, Object> changes, String field, Object before, Object after) {
+        if (!Objects.equals(before, after)) {
+            changes.put(field, after);
+        }
+    }
+
+    /**
+     * insert user and flush it, so a unique email violation from a concurrent write is reported
+     * as the same error as a found email. Other integrity errors are reported as rejected data
+     *
+     * @param user - user to insert
+     * @return saved user
+     * @throws ValidationException if the email is already used or the db does not accept the user
+     */
+    private User saveUnique(User user) throws ValidationException {
+        try {
+            return userStorage.save(user);
+        } catch (DataIntegrityViolationException e) {
+            throw new ValidationException(List.of(DataIntegrity.toViolation(e)));
         }
     }
 
@@ -155,24 +512,165 @@ public class UserService {
      * @throws IllegalArgumentException is something wrong
      */
     public void isDataValid(LocalDate date) throws IllegalArgumentException {
-        if (date != null && date.isAfter(LocalDate.now())) {
-            throw new IllegalArgumentException("Error. The date cannot be the future");
+        if (isFuture(date)) {
+            throw new InvalidRequestException(FUTURE_DATE);
         }
     }
 
     /**
-     * delete user by his id
+     * delete user by his id with one statement
      *
      * @param id - user id
      * @throws RuntimeException if something is wrong
      */
-    @Transactional(isolation = Isolation.REPEATABLE_READ)
-    @Retryable(maxAttempts = 5)
+    @Transactional
+    @RetryableWrite
     public void delete(Long id) throws RuntimeException {
-        if (id == null || userRepository.findById(id).isEmpty()) {
-            throw new RuntimeException("Error. User with this id doesnt exist");
+        if (id == null || userStorage.deleteById(id) == 0) {
+            throw new InvalidRequestException("Error. User with this id doesnt exist");
+        }
+        userCache.evict(id);
+        userStatsSummary.remove(id);
+    }
+
+    /**
+     * delete users by ids with one statement per 1000 ids
+     *
+     * @param ids - users ids
+     * @return count of deleted users
+     * @throws IllegalArgumentException if the list is empty
+     */
+    @Transactional
+    public int deleteAll(List<Long> ids) throws IllegalArgumentException {
+        if (ids == null || ids.isEmpty()) {
+            throw new InvalidRequestException("Error. The list of ids is empty");
+        }
+
+        var uniqueIds = new ArrayList<Long>(new LinkedHashSet<>(ids));
+        uniqueIds.remove(null);
+
+        int deleted = 0;
+        for (int from = 0; from < uniqueIds.size(); from += IN_QUERY_CHUNK_SIZE) {
+            deleted += userStorage.deleteAllByIdIn(
+                    uniqueIds.subList(from, Math.min(from + IN_QUERY_CHUNK_SIZE, uniqueIds.size()))
+            );
+        }
+        uniqueIds.forEach(userCache::evict);
+        uniqueIds.forEach(userStatsSummary::remove);
+        return deleted;
+    }
+
+    /**
+     * count users with date of birth from @param from to @param to by age, year of birth or month of birth.
+     * Counts are read from the in-memory summary if it is enabled, otherwise they are grouped in db
+     *
+     * @param from       - from date
+     * @param to         - to date
+     * @param groupBy    - age, year or month
+     * @param bucketSize - size of age buckets in years, only for age
+     * @return counts of users by group
+     * @throws IllegalArgumentException if something is wrong
+     */
+    @Transactional(readOnly = true)
+    public UsersStatsDTO getUsersStats(LocalDate from, LocalDate to, String groupBy, Integer bucketSize)
+            throws IllegalArgumentException {
+        isDateRangeValid(from, to);
+        var group = StatsGroup.of(groupBy);
+        int size = bucketSize == null ? DEFAULT_AGE_BUCKET_SIZE : bucketSize;
+        if (size < 1) {
+            throw new InvalidRequestException("Error. Bucket size must be positive");
+        }
+
+        TreeMap<Integer, Long> counts;
+        if (userStatsSummary.isReady()) {
+            counts = userStatsSummary.count(from, to, group);
+        } else {
+            counts = new TreeMap<>();
+            for (var row : userStorage.countUsers(from, to, group)) {
+                counts.merge(row.key(), row.count(), Long::sum);
+            }
+        }
+
+        if (group == StatsGroup.AGE && size > 1) {
+            var buckets = new TreeMap<Integer, Long>();
+            counts.forEach((age, count) -> buckets.merge(Math.floorDiv(age, size) * size, count, Long::sum));
+            counts = buckets;
+        }
+
+        long total = 0;
+        for (var count : counts.values()) {
+            total += count;
         }
-        userRepository.deleteById(id);
+        return new UsersStatsDTO(group.name().toLowerCase(), counts, total);
+    }
+
+    /**
+     * get a page of users with birthday from @param from to @param to.
+     * If @param from is after @param to, the range wraps around the year end: users from @param from
+     * to December 31 go first and then users from January 1 to @param to.
+     * Users are ordered by month and day of birth and id, the next page starts after the key from the page token
+     *
+     * @param from      - from month and day in MM-DD format
+     * @param to        - to month and day in MM-DD format, the same as from if null
+     * @param size      - page size, the default one if null
+     * @param pageToken - token from the previous page, null for the first page
+     * @return a page of users
+     * @throws IllegalArgumentException if month days, size or token dont valid
+     */
+    @Transactional(readOnly = true)
+    public UsersPageDTO<User> getUsersPageByBirthday(String from, String to, Integer size, String pageToken)
+            throws IllegalArgumentException {
+        int fromMonthDay = parseMonthDay(from);
+        int toMonthDay = to == null || to.isEmpty() ? fromMonthDay : parseMonthDay(to);
+        int pageSize = getPageSize(size);
+
+        int afterMonthDay = 0;
+        var afterId = Long.MIN_VALUE;
+        if (pageToken != null && !pageToken.isEmpty()) {
+            var token = PageToken.decode(pageToken);
+            try {
+                afterMonthDay = Integer.parseInt(token.key());
+            } catch (RuntimeException e) {
+                throw new InvalidRequestException("Error. Incorrect page token");
+            }
+            afterId = token.id();
+        }
+
+        List<User> users;
+        if (fromMonthDay <= toMonthDay) {
+            users = userStorage.getUsersPageByBirthMonthDayBetween(
+                    fromMonthDay, toMonthDay, afterMonthDay, afterId, pageSize + 1
+            );
+        } else if (afterMonthDay > toMonthDay || afterMonthDay == 0) {
+            users = new ArrayList<>(userStorage.getUsersPageByBirthMonthDayBetween(
+                    fromMonthDay, LAST_MONTH_DAY, afterMonthDay, afterId, pageSize + 1
+            ));
+            if (users.size() <= pageSize) {
+                users.addAll(userStorage.getUsersPageByBirthMonthDayBetween(
+                        FIRST_MONTH_DAY, toMonthDay, 0, Long.MIN_VALUE, pageSize + 1 - users.size()
+                ));
+            }
+        } else {
+            users = userStorage.getUsersPageByBirthMonthDayBetween(
+                    FIRST_MONTH_DAY, toMonthDay, afterMonthDay, afterId, pageSize + 1
+            );
+        }
+
+        if (users.size() <= pageSize) {
+            return new UsersPageDTO<>(users, null);
+        }
+
+        users = users.subList(0, pageSize);
+        var last = users.get(pageSize - 1);
+        return new UsersPageDTO<>(users, new PageToken(last.getBirthMonthDay().toString(), last.getId()).encode());
+    }
+
+    /**
+     * set month and day of birth of the users saved before the birth month day column was added
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void fillBirthMonthDays() {
+        userStorage.fillBirthMonthDays();
     }
 
     /**
@@ -185,12 +683,217 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public List<User> getUsersByDates(LocalDate from, LocalDate to) throws IllegalArgumentException {
+        isDateRangeValid(from, to);
+        return userStorage.getUsersByDateOfBirthBetween(from, to);
+    }
+
+    /**
+     * get a page of users by date of birth from @param from to @param to.
+     * Users are ordered by date of birth and id, the next page starts after the key from the page token
+     *
+     * @param from      - from date
+     * @param to        - to date
+     * @param size      - page size, the default one if null
+     * @param pageToken - token from the previous page, null for the first page
+     * @return a page of users
+     * @throws IllegalArgumentException if dates, size or token dont valid
+     */
+    @Transactional(readOnly = true)
+    public UsersPageDTO<User> getUsersPageByDates(LocalDate from, LocalDate to, Integer size, String pageToken)
+            throws IllegalArgumentException {
+        isDateRangeValid(from, to);
+        int pageSize = getPageSize(size);
+
+        var afterDate = from.minusDays(1);
+        var afterId = Long.MIN_VALUE;
+        var token = decodeDateToken(pageToken);
+        if (token != null) {
+            afterDate = LocalDate.parse(token.key());
+            afterId = token.id();
+        }
+
+        var users = userStorage.getUsersPageByDateOfBirthBetween(from, to, afterDate, afterId, pageSize + 1);
+        if (users.size() <= pageSize) {
+            return new UsersPageDTO<>(users, null);
+        }
+
+        users = users.subList(0, pageSize);
+        var last = users.get(pageSize - 1);
+        return new UsersPageDTO<>(users, new PageToken(last.getDateOfBirth().toString(), last.getId()).encode());
+    }
+
+    /**
+     * get only some fields of users by date of birth from @param from to @param to.
+     * Only the selected columns are read from db, without user entities
+     *
+     * @param from   - from date
+     * @param to     - to date
+     * @param fields - comma separated field names
+     * @return a list of field values by field name ordered by date of birth and id
+     * @throws IllegalArgumentException if dates or fields dont valid
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getUsersByDates(LocalDate from, LocalDate to, String fields)
+            throws IllegalArgumentException {
+        isDateRangeValid(from, to);
+        return userStorage.getUserFieldsByDateOfBirthBetween(parseFields(fields), from, to, null, null, null);
+    }
+
+    /**
+     * get a page of only some fields of users by date of birth from @param from to @param to.
+     * Pages and tokens are the same as in the full version
+     *
+     * @param from      - from date
+     * @param to        - to date
+     * @param size      - page size, the default one if null
+     * @param pageToken - token from the previous page, null for the first page
+     * @param fields    - comma separated field names
+     * @return a page of field values by field name
+     * @throws IllegalArgumentException if dates, size, token or fields dont valid
+     */
+    @Transactional(readOnly = true)
+    public UsersPageDTO<Map<String, Object>> getUsersPageByDates(LocalDate from, LocalDate to, Integer size,
+                                                                 String pageToken, String fields)
+            throws IllegalArgumentException {
+        isDateRangeValid(from, to);
+        var selected = parseFields(fields);
+        int pageSize = getPageSize(size);
+
+        LocalDate afterDate = null;
+        Long afterId = null;
+        var token = decodeDateToken(pageToken);
+        if (token != null) {
+            afterDate = LocalDate.parse(token.key());
+            afterId = token.id();
+        }
+
+        // the sort key is read for the next page token even if it is not selected
+        var columns = new ArrayList<>(selected);
+        for (var key : List.of("id", "dateOfBirth")) {
+            if (!columns.contains(key)) {
+                columns.add(key);
+            }
+        }
+        var users = userStorage.getUserFieldsByDateOfBirthBetween(columns, from, to, afterDate, afterId, pageSize + 1);
+
+        String nextPageToken = null;
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            var last = users.get(pageSize - 1);
+            nextPageToken = new PageToken(last.get("dateOfBirth").toString(), (Long) last.get("id")).encode();
+        }
+        if (columns.size() > selected.size()) {
+            users.forEach(user -> user.keySet().retainAll(selected));
+        }
+        return new UsersPageDTO<>(users, nextPageToken);
+    }
+
+    /**
+     * pass users by date of birth from @param from to @param to to the consumer one by one as they come from
+     * the db cursor. Users are detached after the consumer, so memory does not grow with the result size
+     *
+     * @param from     - from date
+     * @param to       - to date
+     * @param consumer - user consumer
+     * @throws IllegalArgumentException if dates dont valid
+     */
+    @Transactional(readOnly = true)
+    public void streamUsersByDates(LocalDate from, LocalDate to, Consumer<User> consumer) throws IllegalArgumentException {
+        isDateRangeValid(from, to);
+
+        try (var users = userStorage.streamUsersByDateOfBirthBetween(from, to)) {
+            users.forEach(consumer);
+        }
+    }
+
+    /**
+     * check does dates range is valid
+     *
+     * @param from - from date
+     * @param to   - to date
+     * @throws IllegalArgumentException if dates dont valid
+     */
+    public void isDateRangeValid(LocalDate from, LocalDate to) throws IllegalArgumentException {
         isDataValid(from);
         isDataValid(to);
 
         if (from.isAfter(to)) {
-            throw new IllegalArgumentException("Error. Start date cannot be after end date");
+            throw new InvalidRequestException("Error. Start date cannot be after end date");
+        }
+    }
+
+    /**
+     * decode the page token with a date of birth key
+     *
+     * @param pageToken - token from the previous page
+     * @return decoded token, null for the first page
+     * @throws IllegalArgumentException if the token dont valid
+     */
+    private static PageToken decodeDateToken(String pageToken) throws IllegalArgumentException {
+        if (pageToken == null || pageToken.isEmpty()) {
+            return null;
+        }
+        var token = PageToken.decode(pageToken);
+        try {
+            LocalDate.parse(token.key());
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Error. Incorrect page token");
+        }
+        return token;
+    }
+
+    /**
+     * parse comma separated field names of users
+     *
+     * @param fields - field names, e.g. id,email
+     * @return field names without duplicates
+     * @throws IllegalArgumentException if a field is unknown or there are no fields
+     */
+    private static List<String> parseFields(String fields) throws IllegalArgumentException {
+        var result = new ArrayList<String>();
+        for (var field : fields.split(",")) {
+            field = field.trim();
+            if (!UserFieldsRepository.FIELDS.contains(field)) {
+                throw new InvalidRequestException("Error. Incorrect field: " + field);
+            }
+            if (!result.contains(field)) {
+                result.add(field);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * parse month and day in MM-DD format
+     *
+     * @param monthDay - month and day, e.g. 12-31
+     * @return month and day as month * 100 + day
+     * @throws IllegalArgumentException if month and day dont valid
+     */
+    private static int parseMonthDay(String monthDay) throws IllegalArgumentException {
+        try {
+            var value = MonthDay.parse("--" + monthDay);
+            return value.getMonthValue() * 100 + value.getDayOfMonth();
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Error. Incorrect month and day: " + monthDay + ". It must be in format MM-DD");
+        }
+    }
+
+    /**
+     * get page size from the client value
+     *
+     * @param size - page size from the client, may be null
+     * @return page size
+     * @throws IllegalArgumentException if size dont valid
+     */
+    private int getPageSize(Integer size) throws IllegalArgumentException {
+        var pagination = userProperties.getPagination();
+        if (size == null) {
+            return pagination.getDefaultSize();
+        }
+        if (size < 1 || size > pagination.getMaxSize()) {
+            throw new InvalidRequestException("Error. Page size must be from 1 to " + pagination.getMaxSize());
         }
-        return userRepository.getUsersByDateOfBirthBetween(from, to);
+        return size;
     }
 }
@@ -0,0 +1,202 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.config.UserProperties;
+import com.example.users_test_task.repository.UserStorage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * node-local count of users by date of birth, so statistics are read without db. It is loaded on startup
+ * if users.stats.summary-enabled is true and then updated on every save and delete after the commit.
+ * Changes committed before the summary is ready are kept and applied after the load, because the load
+ * starts when requests are already accepted and may not see them
+ */
+@Component
+@RequiredArgsConstructor
+public class UserStatsSummary {
+
+    private final UserStorage userStorage;
+    private final UserProperties userProperties;
+    private final AgeCutoff ageCutoff;
+
+    private final Map<Long, LocalDate> datesOfBirth = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<LocalDate, LongAdder> counts = new ConcurrentSkipListMap<>();
+
+    /**
+     * changes committed while the summary is not ready, guarded by pendingLock
+     */
+    private final List<Change> pending = new ArrayList<>();
+    private final ReentrantLock pendingLock = new ReentrantLock();
+
+    private volatile boolean ready;
+
+    /**
+     * load dates of birth of all the users from the storage when the application is started, then apply the changes
+     * committed during the load. If the summary is disabled, it is cleared
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        pendingLock.lock();
+        try {
+            ready = false;
+            datesOfBirth.clear();
+            counts.clear();
+            if (!userProperties.getStats().isSummaryEnabled()) {
+                pending.clear();
+                return;
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+
+        try (var users = userStorage.streamAllDatesOfBirth()) {
+            users.forEach(user -> apply(user.id(), user.dateOfBirth()));
+        }
+
+        pendingLock.lock();
+        try {
+            for (var change : pending) {
+                apply(change.id(), change.dateOfBirth());
+            }
+            pending.clear();
+            ready = true;
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    /**
+     * check does the summary is loaded and can be used instead of db
+     *
+     * @return true if the summary is ready
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * count users with date of birth from @param from to @param to by group
+     *
+     * @param from  - from date
+     * @param to    - to date
+     * @param group - group of users
+     * @return count of users by group key ordered by key
+     */
+    public TreeMap<Integer, Long> count(LocalDate from, LocalDate to, StatsGroup group) {
+        var result = new TreeMap<Integer, Long>();
+        for (var day : counts.subMap(from, true, to, true).entrySet()) {
+            long count = day.getValue().sum();
+            if (count > 0) {
+                result.merge(group.getKey(day.getKey(), ageCutoff), count, Long::sum);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * set the date of birth of the saved user after the commit
+     *
+     * @param id          - user id
+     * @param dateOfBirth - user date of birth
+     */
+    public void put(Long id, LocalDate dateOfBirth) {
+        if (id != null && userProperties.getStats().isSummaryEnabled()) {
+            afterCommit(() -> record(id, dateOfBirth));
+        }
+    }
+
+    /**
+     * remove the deleted user after the commit
+     *
+     * @param id - user id
+     */
+    public void remove(Long id) {
+        if (id != null && userProperties.getStats().isSummaryEnabled()) {
+            afterCommit(() -> record(id, null));
+        }
+    }
+
+    /**
+     * apply the committed change, or keep it until the load is done if the summary is not ready.
+     * A kept change is applied after the loaded value, it sets the same or a newer date of birth
+     *
+     * @param id          - user id
+     * @param dateOfBirth - new date of birth, null if the user is deleted or has no date of birth
+     */
+    private void record(Long id, LocalDate dateOfBirth) {
+        if (!ready) {
+            pendingLock.lock();
+            try {
+                if (!ready) {
+                    pending.add(new Change(id, dateOfBirth));
+                    return;
+                }
+            } finally {
+                pendingLock.unlock();
+            }
+        }
+        apply(id, dateOfBirth);
+    }
+
+    /**
+     * move the user from the old date of birth count to the new one
+     *
+     * @param id          - user id
+     * @param dateOfBirth - new date of birth, null if the user is deleted or has no date of birth
+     */
+    private void apply(Long id, LocalDate dateOfBirth) {
+        datesOfBirth.compute(id, (key, old) -> {
+            if (old != null) {
+                counts.get(old).decrement();
+            }
+            if (dateOfBirth != null) {
+                counts.computeIfAbsent(dateOfBirth, date -> new LongAdder()).increment();
+            }
+            return dateOfBirth;
+        });
+    }
+
+    /**
+     * run the action after the commit of the current transaction, or now if there is no transaction
+     *
+     * @param action - action
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * change committed while the summary is not ready
+     *
+     * @param id          - user id
+     * @param dateOfBirth - new date of birth, null if the user is deleted or has no date of birth
+     */
+    private record Change(Long id, LocalDate dateOfBirth) {
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.users_test_task.service;
+
+import com.example.users_test_task.model.User;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Past;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import org.springframework.stereotype.Component;
+
+import java.lang.annotation.Annotation;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * fast validator of the User constraints. It checks the same constraints as the annotations on User
+ * without metadata lookup and regular expressions. The messages are read from the annotations once on startup.
+ * Emails with quotes, ip addresses or not ASCII chars are not supported, they are validated by the generic validator
+ */
+@Component
+public class UserValidator {
+
+    private static final int MAX_EMAIL_LOCAL_PART_LENGTH = 64;
+    private static final int MAX_EMAIL_DOMAIN_LENGTH = 255;
+    private static final int MAX_DOMAIN_LABEL_LENGTH = 63;
+    private static final int PHONE_NUMBER_LENGTH = 10;
+
+    /**
+     * ASCII chars allowed in an email local part and in a domain label, except '.' and '-'
+     */
+    private static final boolean[] EMAIL_CHARS = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            EMAIL_CHARS[c] = true;
+            EMAIL_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            EMAIL_CHARS[c] = true;
+        }
+        for (char c : "!#$%&'*+/=?^_`{|}~".toCharArray()) {
+            EMAIL_CHARS[c] = true;
+        }
+    }
+
+    private final String emailRequiredMessage = getMessage("email", NotBlank.class);
+    private final String emailMessage = getMessage("email", Email.class);
+    private final String firstNameMessage = getMessage("firstName", NotBlank.class);
+    private final String lastNameMessage = getMessage("lastName", NotBlank.class);
+    private final String dateOfBirthMessage = getMessage("dateOfBirth", Past.class);
+    private final String phoneNumberMessage = getMessage("phoneNumber", Pattern.class);
+    private final String emailLengthMessage = getMessage("email", Size.class);
+    private final String firstNameLengthMessage = getMessage("firstName", Size.class);
+    private final String lastNameLengthMessage = getMessage("lastName", Size.class);
+    private final String addressLengthMessage = getMessage("address", Size.class);
+
+    /**
+     * check does user can be validated by this validator
+     *
+     * @param user - user entity
+     * @return false if the user email is not supported
+     */
+    public boolean supports(User user) {
+        var email = user.getEmail();
+        if (email == null) {
+            return true;
+        }
+        for (int i = 0; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (c >= 128 || c == '"' || c == '[') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * validate user, it is supported only if supports(user) is true
+     *
+     * @param user - user entity
+     * @return a modifiable list of violations, empty if user is valid
+     */
+    public List<Violation> validate(User user) {
+        var violations = new ArrayList<Violation>(2);
+
+        if (isBlank(user.getEmail())) {
+            violations.add(new Violation("email", emailRequiredMessage));
+        }
+        if (!isEmail(user.getEmail())) {
+            violations.add(new Violation("email", emailMessage));
+        }
+        if (isTooLong(user.getEmail())) {
+            violations.add(new Violation("email", emailLengthMessage));
+        }
+        if (isBlank(user.getFirstName())) {
+            violations.add(new Violation("firstName", firstNameMessage));
+        }
+        if (isTooLong(user.getFirstName())) {
+            violations.add(new Violation("firstName", firstNameLengthMessage));
+        }
+        if (isBlank(user.getLastName())) {
+            violations.add(new Violation("lastName", lastNameMessage));
+        }
+        if (isTooLong(user.getLastName())) {
+            violations.add(new Violation("lastName", lastNameLengthMessage));
+        }
+        if (isTooLong(user.getAddress())) {
+            violations.add(new Violation("address", addressLengthMessage));
+        }
+        if (user.getDateOfBirth() != null && !user.getDateOfBirth().isBefore(LocalDate.now())) {
+            violations.add(new Violation("dateOfBirth", dateOfBirthMessage));
+        }
+        if (!isPhoneNumber(user.getPhoneNumber())) {
+            violations.add(new Violation("phoneNumber", phoneNumberMessage));
+        }
+
+        return violations;
+    }
+
+    /**
+     * same as @NotBlank: null or only whitespace chars
+     */
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * same as @Size(max = User.MAX_TEXT_LENGTH)
+     */
+    private static boolean isTooLong(String value) {
+        return value != null && value.length() > User.MAX_TEXT_LENGTH;
+    }
+
+    /**
+     * same as @Email for ASCII emails without quotes and ip addresses
+     */
+    private static boolean isEmail(String value) {
+        if (value == null || value.isEmpty()) {
+            return true;
+        }
+
+        int at = value.lastIndexOf('@');
+        if (at < 0) {
+            return false;
+        }
+        return at <= MAX_EMAIL_LOCAL_PART_LENGTH
+                && isDotSeparated(value, 0, at, false)
+                && value.length() - at - 1 <= MAX_EMAIL_DOMAIN_LENGTH
+                && isDotSeparated(value, at + 1, value.length(), true);
+    }
+
+    /**
+     * check does the part of value is non-empty atoms separated by single dots
+     *
+     * @param value  - value
+     * @param from   - start of the part, inclusive
+     * @param to     - end of the part, exclusive
+     * @param domain - atoms are domain labels: no longer than 63 chars, '-' inside only
+     * @return true if the part is valid
+     */
+    private static boolean isDotSeparated(String value, int from, int to, boolean domain) {
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && value.charAt(i) != '.') {
+                continue;
+            }
+
+            int length = i - start;
+            if (length == 0 || domain && length > MAX_DOMAIN_LABEL_LENGTH) {
+                return false;
+            }
+            for (int j = start; j < i; j++) {
+                char c = value.charAt(j);
+                boolean dash = c == '-' && (!domain || j != start && j != i - 1);
+                if (!dash && (c >= 128 || !EMAIL_CHARS[c])) {
+                    return false;
+                }
+            }
+            start = i + 1;
+        }
+        return true;
+    }
+
+    /**
+     * same as @Pattern(regexp = "^(?:.{0}|\\d{10})$")
+     */
+    private static boolean isPhoneNumber(String value) {
+        if (value == null || value.isEmpty()) {
+            return true;
+        }
+        if (value.length() != PHONE_NUMBER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * get message of the constraint annotation on the User field
+     *
+     * @param field      - field name
+     * @param constraint - constraint annotation type
+     * @return message
+     */
+    private static String getMessage(String field, Class<? extends Annotation> constraint) {
+        try {
+            var annotation = User.class.getDeclaredField(field).getAnnotation(constraint);
+            return (String) constraint.getMethod("message").invoke(annotation);
+        } catch (ReflectiveOperationException | NullPointerException e) {
+            throw new IllegalStateException("Error. No constraint " + constraint.getSimpleName() + " on User." + field, e);
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package com.example.users_test_task.service;
 
+import com.example.users_test_task.config.UserProperties;
 import com.example.users_test_task.exception.ValidationException;
 import com.example.users_test_task.model.User;
+import io.micrometer.core.annotation.Timed;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * service for validate user
@@ -18,6 +22,8 @@ import java.util.Set;
 public class ValidationService {
 
     private final Validator validator;
+    private final UserValidator userValidator;
+    private final UserProperties userProperties;
 
     /**
      * check does user is valid
@@ -27,15 +33,36 @@ public class ValidationService {
      * @throws ValidationException if user not valid
      */
     public boolean isValidUser(User user) throws ValidationException {
-        Set<ConstraintViolation<User>> constraintViolations = validator.validate(user);
+        var violations = validate(user);
 
-        if (!constraintViolations.isEmpty()) {
-            throw new ValidationException(buildViolationsList(constraintViolations));
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations);
         }
 
         return true;
     }
 
+    /**
+     * validate user without throwing
+     *
+     * @param user - user entity
+     * @return a modifiable list of violations, empty if user is valid
+     */
+    @Timed("users.validation")
+    public List<Violation> validate(User user) {
+        if (userProperties.getValidation().isFastPath() && userValidator.supports(user)) {
+            return userValidator.validate(user);
+        }
+
+        Set<ConstraintViolation<User>> constraintViolations = validator.validate(user);
+
+        if (constraintViolations.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return buildViolationsList(constraintViolations);
+    }
+
     /**
      * buildViolationsList function
      *
@@ -50,6 +77,6 @@ public class ValidationService {
                                 violation.getMessage()
                         )
                 )
-                .toList();
+                .collect(Collectors.toCollection(ArrayList::new));
     }
 }
@@ -1,8 +1,10 @@
 package com.example.users_test_task.controllerTests;
 
+import com.example.users_test_task.config.UserProperties;
 import com.example.users_test_task.model.User;
 import com.example.users_test_task.repository.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -15,11 +17,16 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -37,6 +44,12 @@ public class UserDataControllerTests {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserProperties userProperties;
+
     private User testUser;
 
     /**
@@ -58,7 +71,7 @@ public class UserDataControllerTests {
             "test_user, test, user, 2000-01-01, address, 1234567890, false",
             "test_user@gmail.com, , user, 2000-01-01, address, 1234567890, false",
             "test_user@gmail.com, test, , 2000-01-01, address, 1234567890, false",
-            "test_user@gmail.com, test, user, 2025-01-01, address, 1234567890, false",
+            "test_user@gmail.com, test, user, 2099-01-01, address, 1234567890, false",
             "test_user@gmail.com, test, user, 2012-01-01, address, 1234567890, false"
     })
     public void saveUserTest(String email, String firstName, String lastName, LocalDate dateOfBirth,
@@ -90,6 +103,100 @@ public class UserDataControllerTests {
         }
     }
 
+    /**
+     * saveUsers function test
+     *
+     * @param body           - request body
+     * @param expectedResult - users processed or not
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "[{\"email\": \"test_user@gmail.com\", \"firstName\": \"test\", \"lastName\": \"user\", \"dateOfBirth\": \"2000-01-01\"}, {\"email\": \"test_user\"}] | true",
+            "[] | false"
+    })
+    public void saveUsersTest(String body, Boolean expectedResult) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/v1/users/register_batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(expectedResult ? status().isOk() : status().isForbidden())
+                .andReturn();
+
+        String response = result.getResponse().getContentAsString();
+        assert (expectedResult ? response.contains("\"index\":1") && response.contains("Error") : response.contains("Error"));
+
+        userRepository.findUserByEmail("test_user@gmail.com").ifPresent(userRepository::delete);
+    }
+
+    /**
+     * saveUserAsync function test
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void saveUserAsyncTest() throws Exception {
+        var body = "{\"email\": \"test_user@gmail.com\", \"firstName\": \"test\", \"lastName\": \"user\", \"dateOfBirth\": \"2000-01-01\"}";
+        mockMvc.perform(post("/api/v1/users/register_async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isForbidden());
+
+        enableRegisterQueue();
+        try {
+            String response = mockMvc.perform(post("/api/v1/users/register_async")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(status().isAccepted())
+                    .andReturn().getResponse().getContentAsString();
+
+            var id = objectMapper.readTree(response).get("id").asText();
+            for (int i = 0; i < 100 && response.contains("\"queued\""); i++) {
+                Thread.sleep(50);
+                response = mockMvc.perform(get("/api/v1/users/register_status").param("id", id))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString();
+            }
+            var userId = objectMapper.readTree(response).get("userId").asLong();
+            assert (response.contains("\"saved\"") && userRepository.findById(userId).isPresent());
+        } finally {
+            userProperties.getRegisterQueue().setEnabled(false);
+            userRepository.findUserByEmail("test_user@gmail.com").ifPresent(user -> userRepository.deleteById(user.getId()));
+        }
+    }
+
+    /**
+     * updateUsersFields function test
+     *
+     * @param patch          - patch of the test user
+     * @param expectedResult - user updated or not
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "{\"firstName\": \"changed\"} | true",
+            "[{\"op\": \"replace\", \"path\": \"/firstName\", \"value\": \"changed\"}] | true",
+            "{\"email\": \"test_user\"} | false",
+            "[{\"op\": \"test\", \"path\": \"/firstName\", \"value\": \"test\"}] | false"
+    })
+    public void updateUsersFieldsTest(String patch, Boolean expectedResult) throws Exception {
+        setUpTestUser();
+
+        try {
+            MvcResult result = mockMvc.perform(post("/api/v1/users/update_fields_batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[{\"id\": " + testUser.getId() + ", \"patch\": " + patch + "}]"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            String response = result.getResponse().getContentAsString();
+            assert (response.contains("\"index\":0"));
+            assert (expectedResult == response.contains("\"firstName\":\"changed\""));
+            assert (expectedResult != response.contains("Error"));
+        } finally {
+            userRepository.deleteById(testUser.getId());
+        }
+    }
+
     /**
      * updateUser function test
      *
@@ -111,8 +218,8 @@ public class UserDataControllerTests {
             "test_user, test, user, 2000-01-01, address, 1234567890, false",
             "test_user1@gmail.com, , user, 2000-01-01, address, 1234567890, false",
             "test_user1@gmail.com, test, , 2000-01-01, address, 1234567890, false",
-            "test_user1@gmail.com, test, user, 2025-01-01, address, 1234567890, false",
-            "test_user1@gmail.com, test, user, 2007-01-01, address, 1234567890, false"
+            "test_user1@gmail.com, test, user, 2099-01-01, address, 1234567890, false",
+            "test_user1@gmail.com, test, user, 2015-01-01, address, 1234567890, false"
     })
     public void updateUserTest(String email, String firstName, String lastName, LocalDate dateOfBirth,
                                String address, String phoneNumber, Boolean expectedResult) throws Exception {
@@ -146,6 +253,32 @@ public class UserDataControllerTests {
         }
     }
 
+    /**
+     * updateUserFields function test with If-Match header
+     *
+     * @param versionShift   - shift of the If-Match version from the current version
+     * @param expectedStatus - expected response status
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "0, 200",
+            "-1, 409"
+    })
+    public void updateUserFieldsIfMatchTest(Long versionShift, Integer expectedStatus) throws Exception {
+        setUpTestUser();
+
+        try {
+            mockMvc.perform(post("/api/v1/users/update_fields")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("If-Match", "\"" + (testUser.getVersion() + versionShift) + "\"")
+                            .content("{\"id\": " + testUser.getId() + ", \"firstName\": \"new name\"}"))
+                    .andExpect(status().is(expectedStatus));
+        } finally {
+            userRepository.deleteById(testUser.getId());
+        }
+    }
+
     /**
      * updateFields function test
      *
@@ -254,6 +387,36 @@ public class UserDataControllerTests {
         assert (expectedResult ? response.contains("deleted") : response.contains("Error"));
     }
 
+    /**
+     * deleteUsers function test
+     *
+     * @param isUserExist    - is user exist in db
+     * @param expectedResult - expected response
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "true, Users deleted: 1",
+            "false, Users deleted: 0"
+    })
+    public void deleteUsersTest(Boolean isUserExist, String expectedResult) throws Exception {
+        long id = -1;
+
+        if (isUserExist) {
+            setUpTestUser();
+
+            id = testUser.getId();
+        }
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/users/delete_batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + id + ", -2]"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assert (mvcResult.getResponse().getContentAsString().equals(expectedResult));
+    }
+
     /**
      * getUsersByDates function test
      *
@@ -284,6 +447,254 @@ public class UserDataControllerTests {
         deleteTestUser();
     }
 
+    /**
+     * getUsersPageByDates function test
+     *
+     * @param from           - from date
+     * @param to             - to date
+     * @param expectedResult - expected result
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "1999-01-01, 2020-01-01, true",
+            "2020-01-01, 2000-01-01, false"
+    })
+    public void getUsersPageByDatesTest(String from, String to, Boolean expectedResult) throws Exception {
+        setUpTestUser();
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/v1/users/get_users_by_dates_page")
+                        .param("from", from)
+                        .param("to", to)
+                        .param("size", "10"))
+                .andExpect(expectedResult ? status().isOk() : status().isForbidden())
+                .andReturn();
+
+        String response = mvcResult.getResponse().getContentAsString();
+
+        assert (expectedResult ? response.contains("\"users\":[") && response.contains(testUser.getEmail()) : response.contains("Error"));
+
+        deleteTestUser();
+    }
+
+    /**
+     * getUsersByDates function test with selected fields
+     *
+     * @param fields         - selected fields
+     * @param expectedResult - expected result
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "'id,email', true",
+            "'email,password', false"
+    })
+    public void getUsersByDatesFieldsTest(String fields, Boolean expectedResult) throws Exception {
+        setUpTestUser();
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/v1/users/get_users_by_dates")
+                        .param("from", "1999-01-01")
+                        .param("to", "2020-01-01")
+                        .param("fields", fields))
+                .andExpect(expectedResult ? status().isOk() : status().isForbidden())
+                .andReturn();
+
+        String response = mvcResult.getResponse().getContentAsString();
+
+        assert (expectedResult
+                ? response.equals("[{\"id\":" + testUser.getId() + ",\"email\":\"" + testUser.getEmail() + "\"}]")
+                : response.contains("Error"));
+
+        deleteTestUser();
+    }
+
+    /**
+     * getUsersPageByBirthday function test
+     *
+     * @param from           - from month and day
+     * @param to             - to month and day
+     * @param expectedResult - expected result
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "01-01, 01-01, true",
+            "12-01, 01-31, true",
+            "02-30, 03-01, false"
+    })
+    public void getUsersPageByBirthdayTest(String from, String to, Boolean expectedResult) throws Exception {
+        setUpTestUser();
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/v1/users/get_users_by_birthday_page")
+                        .param("from", from)
+                        .param("to", to)
+                        .param("size", "10"))
+                .andExpect(expectedResult ? status().isOk() : status().isForbidden())
+                .andReturn();
+
+        String response = mvcResult.getResponse().getContentAsString();
+
+        assert (expectedResult ? response.contains("\"users\":[") && response.contains(testUser.getEmail()) : response.contains("Error"));
+
+        deleteTestUser();
+    }
+
+    /**
+     * getUsersStats function test
+     *
+     * @param from           - from date
+     * @param to             - to date
+     * @param groupBy        - group of users
+     * @param expectedResult - expected result
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "1999-01-01, 2020-01-01, year, true",
+            "1999-01-01, 2020-01-01, age, true",
+            "1999-01-01, 2020-01-01, day, false",
+            "2020-01-01, 2000-01-01, month, false"
+    })
+    public void getUsersStatsTest(String from, String to, String groupBy, Boolean expectedResult) throws Exception {
+        setUpTestUser();
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/v1/users/get_users_stats")
+                        .param("from", from)
+                        .param("to", to)
+                        .param("group_by", groupBy))
+                .andExpect(expectedResult ? status().isOk() : status().isForbidden())
+                .andReturn();
+
+        String response = mvcResult.getResponse().getContentAsString();
+
+        assert (expectedResult ? response.contains("\"groupBy\":\"" + groupBy + "\"") && response.contains("\"total\":") : response.contains("Error"));
+
+        deleteTestUser();
+    }
+
+    /**
+     * exportUsers function test
+     *
+     * @param format         - export format
+     * @param gzip           - compress the file
+     * @param expectedResult - expected result
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "ndjson, false, true",
+            "csv, false, true",
+            "csv, true, true",
+            "xml, false, false"
+    })
+    public void exportUsersTest(String format, Boolean gzip, Boolean expectedResult) throws Exception {
+        setUpTestUser();
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/v1/users/export")
+                        .param("format", format)
+                        .param("gzip", gzip.toString()))
+                .andReturn();
+        mvcResult = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(expectedResult ? status().isOk() : status().isForbidden())
+                .andReturn();
+
+        var content = mvcResult.getResponse().getContentAsByteArray();
+        String response = new String(gzip ? new GZIPInputStream(new ByteArrayInputStream(content)).readAllBytes() : content,
+                StandardCharsets.UTF_8);
+
+        if (!expectedResult) {
+            assert (response.contains("Error"));
+        } else if (format.equals("csv")) {
+            assert (response.startsWith("id,email,firstName,lastName,dateOfBirth,address,phoneNumber,version\r\n"));
+            assert (response.contains(testUser.getId() + ",test_user@gmail.com,test,user,2000-01-01,,,0\r\n"));
+        } else {
+            var line = response.lines()
+                    .filter(item -> item.contains(testUser.getEmail()))
+                    .findFirst()
+                    .orElseThrow();
+            var user = objectMapper.readValue(line, User.class);
+            assert (user.getId().equals(testUser.getId()) && user.getDateOfBirth().equals(testUser.getDateOfBirth()));
+        }
+
+        deleteTestUser();
+    }
+
+    /**
+     * importUsers function test
+     *
+     * @param format         - file format
+     * @param expectedResult - expected result
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "ndjson, true",
+            "xml, false"
+    })
+    public void importUsersTest(String format, Boolean expectedResult) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(post("/api/v1/users/import")
+                        .param("format", format)
+                        .content("{\"email\": \"test_user@gmail.com\", \"firstName\": \"test\", \"lastName\": \"user\"}\n"
+                                + "{\"email\": \"test_user\", \"firstName\": \"test\", \"lastName\": \"user\"}\n"))
+                .andExpect(expectedResult ? status().isAccepted() : status().isForbidden())
+                .andReturn();
+
+        String response = mvcResult.getResponse().getContentAsString();
+        if (!expectedResult) {
+            assert (response.contains("Error"));
+            return;
+        }
+
+        var id = objectMapper.readTree(response).get("id").asText();
+        try {
+            for (int i = 0; i < 300 && response.contains("\"running\""); i++) {
+                Thread.sleep(100);
+                response = mockMvc.perform(get("/api/v1/users/import_status").param("id", id))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString();
+            }
+            assert (response.contains("\"done\"") && response.contains("\"imported\":1") && response.contains("\"rejected\":1"));
+
+            response = mockMvc.perform(get("/api/v1/users/import_rejections").param("id", id))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            assert (response.startsWith("{\"line\":2,") && response.contains("email"));
+        } finally {
+            userRepository.findUserByEmail("test_user@gmail.com").ifPresent(user -> userRepository.deleteById(user.getId()));
+        }
+    }
+
+    /**
+     * streamUsersByDates function test
+     *
+     * @param from           - from date
+     * @param to             - to date
+     * @param expectedResult - expected result
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "1999-01-01, 2020-01-01, true",
+            "2020-01-01, 2000-01-01, false"
+    })
+    public void streamUsersByDatesTest(String from, String to, Boolean expectedResult) throws Exception {
+        setUpTestUser();
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/v1/users/get_users_by_dates_stream")
+                        .param("from", from)
+                        .param("to", to))
+                .andReturn();
+        mvcResult = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(expectedResult ? status().isOk() : status().isForbidden())
+                .andReturn();
+
+        String response = mvcResult.getResponse().getContentAsString();
+
+        assert (expectedResult ? response.startsWith("[") && response.endsWith("]") && response.contains(testUser.getEmail()) : response.contains("Error"));
+
+        deleteTestUser();
+    }
+
     /**
      * set up the test user
      */
@@ -304,4 +715,17 @@ public class UserDataControllerTests {
     private void deleteTestUser() {
         userRepository.delete(testUser);
     }
+
+    /**
+     * enable the register queue with the journal in a temporary directory
+     *
+     * @throws Exception if the directory is not created
+     */
+    private void enableRegisterQueue() throws Exception {
+        var properties = userProperties.getRegisterQueue();
+        if (properties.getJournalDir() == null) {
+            properties.setJournalDir(Files.createTempDirectory("users-journal").toString());
+        }
+        properties.setEnabled(true);
+    }
 }
@@ -1,16 +1,28 @@
 package com.example.users_test_task.repositoryTests;
 
 import com.example.users_test_task.model.User;
+import com.example.users_test_task.repository.UserFieldsUpdate;
 import com.example.users_test_task.repository.UserRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * UserRepo tests
@@ -21,6 +33,12 @@ public class UserRepositoryTests {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SqlCapture sqlCapture;
+
     private User testUser;
 
     /**
@@ -76,4 +94,104 @@ public class UserRepositoryTests {
 
         assert (expectedResult == result.contains(testUser));
     }
+
+    /**
+     * updateUsersFields function test, the user with a changed version is not updated
+     */
+    @Test
+    public void updateUsersFieldsTest() {
+        var other = new User();
+        other.setEmail("test_email2@gmail.com");
+        other.setFirstName("test");
+        other.setLastName("user");
+        other = userRepository.save(other);
+
+        try {
+            var fields = new HashMap<String, Object>();
+            fields.put("firstName", "batch");
+            fields.put("dateOfBirth", null);
+            var counts = userRepository.updateUsersFields(List.of("firstName", "dateOfBirth"), List.of(
+                    new UserFieldsUpdate(testUser.getId(), testUser.getVersion(), fields),
+                    new UserFieldsUpdate(other.getId(), other.getVersion() + 5, fields)
+            ));
+            assert (counts.length == 2 && counts[0] == 1 && counts[1] == 0);
+
+            testUser = userRepository.findById(testUser.getId()).orElseThrow();
+            assert (testUser.getFirstName().equals("batch") && testUser.getDateOfBirth() == null);
+            assert (testUser.getVersion() == 1 && testUser.getLastName().equals("user"));
+            assert (userRepository.findById(other.getId()).orElseThrow().getFirstName().equals("test"));
+        } finally {
+            userRepository.deleteById(other.getId());
+        }
+    }
+
+    /**
+     * check does the date of birth range queries of the repository use the date of birth index.
+     * The SQL generated by Hibernate for the repository methods is explained with the same parameters.
+     * Sequential scan is disabled because the test table is too small for the planner to prefer the index
+     */
+    @Test
+    @Transactional
+    public void getUsersByDateOfBirthBetweenUsesIndexTest() {
+        jdbcTemplate.execute("set local enable_seqscan = off");
+        var from = LocalDate.of(1900, 1, 1);
+        var to = LocalDate.of(2005, 1, 1);
+
+        sqlCapture.clear();
+        userRepository.getUsersByDateOfBirthBetween(from, to);
+        assertUsesIndex(sqlCapture.last(), from, to);
+
+        sqlCapture.clear();
+        userRepository.getUsersPageByDateOfBirthBetween(from, to, from, 0L, PageRequest.ofSize(10));
+        assertUsesIndex(sqlCapture.last(), from, to, from, from, 0L, 0, 10);
+    }
+
+    /**
+     * explain the query and check does its plan use the date of birth index
+     *
+     * @param sql        - query with ? parameters
+     * @param parameters - parameters in the order of the ? marks
+     */
+    private void assertUsesIndex(String sql, Object... parameters) {
+        assert (sql.chars().filter(c -> c == '?').count() == parameters.length) : sql;
+        var plan = String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class, parameters));
+        assert (plan.contains("idx_users_date_of_birth_id")) : sql + "\n" + plan;
+    }
+
+    /**
+     * keeps the SQL statements prepared by Hibernate
+     */
+    static class SqlCapture implements StatementInspector {
+
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+
+        void clear() {
+            statements.clear();
+        }
+
+        String last() {
+            assert (!statements.isEmpty());
+            return statements.get(statements.size() - 1);
+        }
+    }
+
+    @TestConfiguration
+    static class SqlCaptureConfig {
+
+        @Bean
+        SqlCapture sqlCapture() {
+            return new SqlCapture();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer sqlCaptureCustomizer(SqlCapture sqlCapture) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, sqlCapture);
+        }
+    }
 }
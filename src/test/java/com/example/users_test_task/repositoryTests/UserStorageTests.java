@@ -0,0 +1,257 @@
+package com.example.users_test_task.repositoryTests;
+
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.repository.InMemoryUserStorage;
+import com.example.users_test_task.repository.KeyCount;
+import com.example.users_test_task.repository.UserRepository;
+import com.example.users_test_task.repository.UserStorage;
+import com.example.users_test_task.service.AgeCutoff;
+import com.example.users_test_task.service.EmailIndex;
+import com.example.users_test_task.service.StatsGroup;
+import com.example.users_test_task.service.UserCache;
+import com.example.users_test_task.service.UserStatsSummary;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * UserStorage tests, the same cases for the jpa and the memory engines
+ */
+@SpringBootTest
+public class UserStorageTests {
+
+    @Autowired
+    private UserStorage jpaUserStorage;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AgeCutoff ageCutoff;
+
+    /**
+     * save and find functions test
+     *
+     * @param engine - storage engine
+     */
+    @Transactional
+    @ParameterizedTest
+    @CsvSource({"jpa", "memory"})
+    public void saveAndFindTest(String engine) {
+        var storage = getStorage(engine);
+        var user = storage.save(createUser("test_user1@gmail.com", LocalDate.of(2000, 1, 1)));
+        assert (user.getId() != null && user.getVersion() == 0);
+
+        var found = storage.findById(user.getId()).orElseThrow();
+        assert (found.equals(user) && found.getBirthMonthDay() == 101);
+        assert (storage.findUserByEmail("test_user1@gmail.com").orElseThrow().getId().equals(user.getId()));
+        assert (storage.findUserByEmail("test_user2@gmail.com").isEmpty());
+        assert (storage.findExistingEmails(List.of("test_user1@gmail.com", "test_user2@gmail.com"))
+                .equals(Set.of("test_user1@gmail.com")));
+
+        try {
+            storage.save(createUser("test_user1@gmail.com", LocalDate.of(2000, 1, 1)));
+            assert (false);
+        } catch (DataIntegrityViolationException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * saveAll function test, nothing is saved if one email is used
+     *
+     * @param engine - storage engine
+     */
+    @Transactional
+    @ParameterizedTest
+    @CsvSource({"jpa", "memory"})
+    public void saveAllTest(String engine) {
+        var storage = getStorage(engine);
+        var users = storage.saveAll(List.of(
+                createUser("test_user1@gmail.com", LocalDate.of(2000, 1, 1)),
+                createUser("test_user2@gmail.com", LocalDate.of(2000, 1, 2))
+        ));
+        assert (users.size() == 2 && users.get(0).getId() != null && users.get(1).getId() != null);
+
+        if (engine.equals("memory")) {
+            try {
+                storage.saveAll(List.of(
+                        createUser("test_user3@gmail.com", LocalDate.of(2000, 1, 3)),
+                        createUser("test_user1@gmail.com", LocalDate.of(2000, 1, 1))
+                ));
+                assert (false);
+            } catch (DataIntegrityViolationException e) {
+                assert (storage.findUserByEmail("test_user3@gmail.com").isEmpty());
+            }
+        }
+    }
+
+    /**
+     * getUsersByDateOfBirthBetween and getUsersPageByDateOfBirthBetween functions test
+     *
+     * @param engine - storage engine
+     */
+    @Transactional
+    @ParameterizedTest
+    @CsvSource({"jpa", "memory"})
+    public void getUsersByDateOfBirthBetweenTest(String engine) {
+        var storage = getStorage(engine);
+        var saved = new ArrayList<User>();
+        for (int i = 1; i <= 5; i++) {
+            saved.add(storage.save(createUser("test_user" + i + "@gmail.com", LocalDate.of(1900, 1, 1 + i / 2))));
+        }
+        storage.save(createUser("test_user6@gmail.com", null));
+
+        var users = storage.getUsersByDateOfBirthBetween(LocalDate.of(1900, 1, 2), LocalDate.of(1900, 1, 3));
+        assert (users.size() == 4);
+
+        var first = storage.getUsersPageByDateOfBirthBetween(LocalDate.of(1900, 1, 1), LocalDate.of(1900, 1, 3),
+                LocalDate.of(1899, 12, 31), Long.MIN_VALUE, 2);
+        assert (first.equals(saved.subList(0, 2)));
+        var last = first.get(1);
+        var second = storage.getUsersPageByDateOfBirthBetween(LocalDate.of(1900, 1, 1), LocalDate.of(1900, 1, 3),
+                last.getDateOfBirth(), last.getId(), 10);
+        assert (second.equals(saved.subList(2, 5)));
+    }
+
+    /**
+     * countUsers by age function test, ages are counted from the age cutoff, so a user born on the cutoff date
+     * has the min age and a user born on the next day does not
+     *
+     * @param engine - storage engine
+     */
+    @Transactional
+    @ParameterizedTest
+    @CsvSource({"jpa", "memory"})
+    public void countUsersByAgeTest(String engine) {
+        var storage = getStorage(engine);
+        var cutoff = ageCutoff.getCutoff();
+        var from = cutoff.minusYears(1);
+        var to = cutoff.plusDays(1);
+        var before = toMap(storage.countUsers(from, to, StatsGroup.AGE));
+
+        storage.save(createUser("test_user1@gmail.com", cutoff));
+        storage.save(createUser("test_user2@gmail.com", cutoff.plusDays(1)));
+        storage.save(createUser("test_user3@gmail.com", cutoff.minusYears(1)));
+        storage.save(createUser("test_user4@gmail.com", cutoff.minusYears(1).plusDays(1)));
+
+        var after = toMap(storage.countUsers(from, to, StatsGroup.AGE));
+        int minAge = ageCutoff.getAge(cutoff);
+        assert (ageCutoff.getAge(cutoff.plusDays(1)) == minAge - 1);
+        assert (after.getOrDefault(minAge + 1, 0L) - before.getOrDefault(minAge + 1, 0L) == 1);
+        assert (after.getOrDefault(minAge, 0L) - before.getOrDefault(minAge, 0L) == 2);
+        assert (after.getOrDefault(minAge - 1, 0L) - before.getOrDefault(minAge - 1, 0L) == 1);
+    }
+
+    /**
+     * updateUserFields function test, not in a test transaction, so the jpa engine reads the updated row
+     *
+     * @param engine - storage engine
+     */
+    @ParameterizedTest
+    @CsvSource({"jpa", "memory"})
+    public void updateUserFieldsTest(String engine) {
+        var storage = getStorage(engine);
+        var user = storage.save(createUser("test_user1@gmail.com", LocalDate.of(1900, 1, 1)));
+        var other = storage.save(createUser("test_user2@gmail.com", LocalDate.of(1900, 1, 1)));
+
+        try {
+            assert (storage.updateUserFields(user.getId(), 5L, Map.of("firstName", "changed")) == 0);
+            assert (storage.updateUserFields(user.getId(), 0L, Map.of("firstName", "changed",
+                    "dateOfBirth", LocalDate.of(1900, 2, 3), "birthMonthDay", 203)) == 1);
+
+            var updated = storage.findById(user.getId()).orElseThrow();
+            assert (updated.getFirstName().equals("changed") && updated.getVersion() == 1 && updated.getBirthMonthDay() == 203);
+            assert (storage.getUsersByDateOfBirthBetween(LocalDate.of(1900, 2, 3), LocalDate.of(1900, 2, 3)).size() == 1);
+
+            try {
+                storage.updateUserFields(user.getId(), 1L, Map.of("email", "test_user2@gmail.com"));
+                assert (false);
+            } catch (DataIntegrityViolationException e) {
+                System.out.println(e.getMessage());
+            }
+        } finally {
+            if (engine.equals("jpa")) {
+                userRepository.deleteAllById(List.of(user.getId(), other.getId()));
+            }
+        }
+    }
+
+    /**
+     * deleteById, deleteAllByIdIn and deleteAllByEmail functions test
+     *
+     * @param engine - storage engine
+     */
+    @Transactional
+    @ParameterizedTest
+    @CsvSource({"jpa", "memory"})
+    public void deleteTest(String engine) {
+        var storage = getStorage(engine);
+        var first = storage.save(createUser("test_user1@gmail.com", LocalDate.of(1900, 1, 1)));
+        var second = storage.save(createUser("test_user2@gmail.com", LocalDate.of(1900, 1, 1)));
+        var third = storage.save(createUser("test_user3@gmail.com", LocalDate.of(1900, 1, 1)));
+
+        assert (storage.deleteById(first.getId()) == 1 && storage.deleteById(first.getId()) == 0);
+        assert (storage.findById(first.getId()).isEmpty() && storage.findUserByEmail(first.getEmail()).isEmpty());
+        assert (storage.deleteAllByIdIn(List.of(first.getId(), second.getId())) == 1);
+        storage.deleteAllByEmail(third.getEmail());
+        assert (storage.findById(third.getId()).isEmpty());
+        assert (storage.getUsersByDateOfBirthBetween(LocalDate.of(1900, 1, 1), LocalDate.of(1900, 1, 1)).isEmpty());
+    }
+
+    /**
+     * get the storage of the engine, a new memory storage for every test
+     *
+     * @param engine - jpa or memory
+     * @return user storage
+     */
+    private UserStorage getStorage(String engine) {
+        if (engine.equals("jpa")) {
+            return jpaUserStorage;
+        }
+
+        var beanFactory = new DefaultListableBeanFactory();
+        return new InMemoryUserStorage(beanFactory.getBeanProvider(EmailIndex.class),
+                beanFactory.getBeanProvider(UserCache.class), beanFactory.getBeanProvider(UserStatsSummary.class),
+                ageCutoff);
+    }
+
+    /**
+     * convert key counts to a map
+     *
+     * @param counts - key counts
+     * @return count by key
+     */
+    private static Map<Integer, Long> toMap(List<KeyCount> counts) {
+        var result = new HashMap<Integer, Long>();
+        counts.forEach(count -> result.put(count.key(), count.count()));
+        return result;
+    }
+
+    /**
+     * create a test user
+     *
+     * @param email       - user email
+     * @param dateOfBirth - user DoB
+     * @return user
+     */
+    private static User createUser(String email, LocalDate dateOfBirth) {
+        var user = new User();
+        user.setEmail(email);
+        user.setFirstName("test");
+        user.setLastName("user");
+        user.setDateOfBirth(dateOfBirth);
+        return user;
+    }
+}
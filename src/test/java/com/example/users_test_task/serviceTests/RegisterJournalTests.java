@@ -0,0 +1,195 @@
+package com.example.users_test_task.serviceTests;
+
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.service.RegisterJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * RegisterJournal tests
+ */
+@SpringBootTest
+public class RegisterJournalTests {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * open function test, the registrations which are not done are replayed after a restart
+     *
+     * @param segmentSize - size of one segment file
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "1048576",
+            "512"
+    })
+    public void openTest(Integer segmentSize) throws Exception {
+        var dir = Files.createTempDirectory("users-journal");
+        try {
+            var journal = new RegisterJournal(dir, segmentSize, objectMapper);
+            assert (journal.open().isEmpty());
+            for (int i = 1; i <= 10; i++) {
+                journal.sync(journal.append("id" + i, createUser(i)));
+            }
+            for (int i = 1; i <= 10; i += 2) {
+                journal.done("id" + i);
+            }
+            journal.close();
+
+            journal = new RegisterJournal(dir, segmentSize, objectMapper);
+            var pending = journal.open();
+            assert (new ArrayList<>(pending.keySet()).equals(List.of("id2", "id4", "id6", "id8", "id10")));
+            var user = pending.get("id4");
+            assert (user.getEmail().equals("test_user4@gmail.com") && user.getBirthMonthDay() == 104);
+
+            for (var id : pending.keySet()) {
+                journal.done(id);
+            }
+            journal.close();
+            try (var reopened = new RegisterJournal(dir, segmentSize, objectMapper)) {
+                assert (reopened.open().isEmpty());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * open function test with a torn entry at the end of the segment
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void openTornEntryTest() throws Exception {
+        var dir = Files.createTempDirectory("users-journal");
+        try {
+            var journal = new RegisterJournal(dir, 1024 * 1024, objectMapper);
+            journal.open();
+            journal.append("id1", createUser(1));
+            long position = journal.append("id2", createUser(2));
+            journal.sync(position);
+            journal.close();
+
+            try (var stream = Files.list(dir); var file = new RandomAccessFile(stream.findFirst().orElseThrow().toFile(), "rw")) {
+                file.seek(position - 3);
+                file.write(new byte[]{1, 2, 3});
+            }
+
+            try (var reopened = new RegisterJournal(dir, 1024 * 1024, objectMapper)) {
+                var pending = reopened.open();
+                assert (pending.size() == 1 && pending.containsKey("id1"));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * open function test, the directory of an open journal can not be opened by another journal
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void openLockedTest() throws Exception {
+        var dir = Files.createTempDirectory("users-journal");
+        try {
+            var journal = new RegisterJournal(dir, 4096, objectMapper);
+            journal.open();
+            journal.sync(journal.append("id1", createUser(1)));
+
+            try (var other = new RegisterJournal(dir, 4096, objectMapper)) {
+                other.open();
+                assert (false);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            journal.close();
+
+            try (var reopened = new RegisterJournal(dir, 4096, objectMapper)) {
+                assert (reopened.open().containsKey("id1"));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * sync function test from several threads
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void syncTest() throws Exception {
+        var dir = Files.createTempDirectory("users-journal");
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var journal = new RegisterJournal(dir, 4096, objectMapper);
+            journal.open();
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 1; i <= 200; i++) {
+                int number = i;
+                futures.add(executor.submit(() -> {
+                    journal.sync(journal.append("id" + number, createUser(number)));
+                    return null;
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+            journal.close();
+
+            try (var reopened = new RegisterJournal(dir, 4096, objectMapper)) {
+                assert (reopened.open().size() == 200);
+            }
+        } finally {
+            executor.shutdown();
+            delete(dir);
+        }
+    }
+
+    /**
+     * create a test user
+     *
+     * @param number - user number
+     * @return user
+     */
+    private static User createUser(int number) {
+        var user = new User();
+        user.setEmail("test_user" + number + "@gmail.com");
+        user.setFirstName("test");
+        user.setLastName("user");
+        user.setDateOfBirth(LocalDate.of(2000, 1, 1).plusDays(number - 1));
+        return user;
+    }
+
+    /**
+     * delete the directory with its files
+     *
+     * @param dir - directory
+     * @throws Exception if something wrong
+     */
+    private static void delete(Path dir) throws Exception {
+        try (var stream = Files.walk(dir)) {
+            for (var file : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.users_test_task.serviceTests;
+
+import com.example.users_test_task.config.UserProperties;
+import com.example.users_test_task.dto.ImportStatusDTO;
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.repository.UserRepository;
+import com.example.users_test_task.service.FileFormat;
+import com.example.users_test_task.service.ReservedEmails;
+import com.example.users_test_task.service.UserImportService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * UserImportService tests
+ */
+@SpringBootTest
+public class UserImportServiceTests {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProperties userProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReservedEmails reservedEmails;
+
+    /**
+     * import function test with valid and rejected rows
+     *
+     * @param format - file format
+     * @param copy   - write with PostgreSQL COPY
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "ndjson, true",
+            "ndjson, false",
+            "csv, true",
+            "csv, false"
+    })
+    public void importTest(String format, Boolean copy) throws Exception {
+        var existing = new User();
+        existing.setEmail("test_user_existing@gmail.com");
+        existing.setFirstName("test");
+        existing.setLastName("user");
+        existing = userRepository.save(existing);
+
+        var file = format.equals("csv")
+                ? """
+                id,email,firstName,lastName,dateOfBirth,address,phoneNumber
+                ,test_user1@gmail.com,test,user,1990-01-02,"Kyiv, ""Main"" street",
+                ,test_user2@gmail.com,test,user,,"",1234567890
+
+                ,test_user1@gmail.com,test,user,,,
+                ,test_user_existing@gmail.com,test,user,,,
+                ,test_user3,test,user,,,
+                ,test_user4@gmail.com,test,user,incorrect,,
+                ,test_user5@gmail.com,test,user,%s,,
+                """.formatted(LocalDate.now().minusYears(1))
+                : """
+                {"email": "test_user1@gmail.com", "firstName": "test", "lastName": "user", "dateOfBirth": "1990-01-02", "address": "Kyiv, \\"Main\\" street"}
+                {"email": "test_user2@gmail.com", "firstName": "test", "lastName": "user", "address": "", "phoneNumber": "1234567890"}
+
+                {"email": "test_user1@gmail.com", "firstName": "test", "lastName": "user"}
+                {"email": "test_user_existing@gmail.com", "firstName": "test", "lastName": "user"}
+                {"email": "test_user3", "firstName": "test", "lastName": "user"}
+                {"email": "test_user4@gmail.com", "firstName": "test", "lastName": "user", "dateOfBirth": "incorrect"}
+                {"email": "test_user5@gmail.com", "firstName": "test", "lastName": "user", "dateOfBirth": "%s"}
+                """.formatted(LocalDate.now().minusYears(1));
+
+        userProperties.getImport().setCopyEnabled(copy);
+        userProperties.getImport().setChunkSize(2);
+        try {
+            var status = importFile(format, file);
+            assert (status.status().equals("done"));
+            assert (status.read() == 7 && status.imported() == 2 && status.rejected() == 5);
+
+            var first = userRepository.findUserByEmail("test_user1@gmail.com").orElseThrow();
+            assert (first.getAddress().equals("Kyiv, \"Main\" street") && first.getBirthMonthDay() == 102);
+            assert (first.getVersion() == 0);
+            var second = userRepository.findUserByEmail("test_user2@gmail.com").orElseThrow();
+            assert (second.getAddress().isEmpty() && second.getDateOfBirth() == null && second.getPhoneNumber().equals("1234567890"));
+
+            int header = format.equals("csv") ? 1 : 0;
+            var rejections = Files.readAllLines(userImportService.getRejectionsFile(status.id()));
+            assert (rejections.size() == 5);
+            assert (rejections.get(0).startsWith("{\"line\":" + (4 + header) + ",") && rejections.get(0).contains("already used"));
+            assert (rejections.get(1).startsWith("{\"line\":" + (5 + header) + ",") && rejections.get(1).contains("already used"));
+            assert (rejections.get(2).contains("Email should be valid"));
+            assert (rejections.get(3).contains("Error"));
+            assert (rejections.get(4).contains("too young"));
+        } finally {
+            userProperties.getImport().setCopyEnabled(true);
+            userProperties.getImport().setChunkSize(10000);
+            for (var email : List.of("test_user1@gmail.com", "test_user2@gmail.com", existing.getEmail())) {
+                userRepository.findUserByEmail(email).ifPresent(user -> userRepository.deleteById(user.getId()));
+            }
+        }
+    }
+
+    /**
+     * import function test with rows which the db refuses: an email written without the email index
+     * and a row which breaks a db check. The other rows are imported and the refused rows are rejected
+     *
+     * @param copy - write with PostgreSQL COPY
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({"true", "false"})
+    public void importRefusedRowsTest(Boolean copy) throws Exception {
+        jdbcTemplate.update("insert into users (id, email, first_name, last_name, version) " +
+                "values (nextval('users_seq'), 'test_user_sql@gmail.com', 'test', 'user', 0)");
+        jdbcTemplate.execute("alter table users add constraint test_users_refused check (first_name <> 'refused')");
+
+        var file = """
+                {"email": "test_user1@gmail.com", "firstName": "test", "lastName": "user"}
+                {"email": "test_user_sql@gmail.com", "firstName": "test", "lastName": "user"}
+                {"email": "test_user2@gmail.com", "firstName": "refused", "lastName": "user"}
+                {"email": "test_user3@gmail.com", "firstName": "test", "lastName": "user"}
+                """;
+
+        userProperties.getImport().setCopyEnabled(copy);
+        try {
+            var status = importFile("ndjson", file);
+            assert (status.status().equals("done")) : status;
+            assert (status.read() == 4 && status.imported() == 2 && status.rejected() == 2) : status;
+            assert (userRepository.findUserByEmail("test_user1@gmail.com").isPresent());
+            assert (userRepository.findUserByEmail("test_user3@gmail.com").isPresent());
+            assert (userRepository.findUserByEmail("test_user2@gmail.com").isEmpty());
+
+            var rejections = Files.readAllLines(userImportService.getRejectionsFile(status.id()));
+            assert (rejections.size() == 2);
+            assert (rejections.get(0).startsWith("{\"line\":2,") && rejections.get(0).contains("already used"));
+            assert (rejections.get(1).startsWith("{\"line\":3,") && rejections.get(1).contains("not accepted by the db"));
+        } finally {
+            userProperties.getImport().setCopyEnabled(true);
+            jdbcTemplate.execute("alter table users drop constraint test_users_refused");
+            jdbcTemplate.update("delete from users where email in " +
+                    "('test_user_sql@gmail.com', 'test_user1@gmail.com', 'test_user2@gmail.com', 'test_user3@gmail.com')");
+        }
+    }
+
+    /**
+     * import function test with an email reserved by a queued registration, the row is rejected
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void importReservedEmailTest() throws Exception {
+        var file = """
+                {"email": "test_user1@gmail.com", "firstName": "test", "lastName": "user"}
+                {"email": "test_user2@gmail.com", "firstName": "test", "lastName": "user"}
+                """;
+
+        reservedEmails.reserve("test_user2@gmail.com");
+        try {
+            var status = importFile("ndjson", file);
+            assert (status.status().equals("done") && status.imported() == 1 && status.rejected() == 1) : status;
+            assert (userRepository.findUserByEmail("test_user2@gmail.com").isEmpty());
+
+            var rejections = Files.readAllLines(userImportService.getRejectionsFile(status.id()));
+            assert (rejections.size() == 1 && rejections.get(0).startsWith("{\"line\":2,")
+                    && rejections.get(0).contains("already used"));
+        } finally {
+            reservedEmails.release("test_user2@gmail.com");
+            userRepository.findUserByEmail("test_user1@gmail.com").ifPresent(user -> userRepository.deleteById(user.getId()));
+        }
+    }
+
+    /**
+     * a finished import expires after the status ttl and its rejection file is deleted
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void importStatusExpiryTest() throws Exception {
+        var ttl = userProperties.getImport().getStatusTtl();
+        userProperties.getImport().setStatusTtl(Duration.ofMillis(200));
+        try {
+            var status = importFile("ndjson", "{\"email\": \"test_user3\", \"firstName\": \"test\", \"lastName\": \"user\"}\n");
+            assert (status.status().equals("done") && status.rejected() == 1) : status;
+            var rejections = userImportService.getRejectionsFile(status.id());
+
+            for (int i = 0; i < 50 && Files.exists(rejections); i++) {
+                Thread.sleep(100);
+            }
+            assert (Files.notExists(rejections));
+            try {
+                userImportService.getStatus(status.id());
+                assert (false);
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
+        } finally {
+            userProperties.getImport().setStatusTtl(ttl);
+        }
+    }
+
+    /**
+     * import function test with an incorrect csv header
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void importIncorrectHeaderTest() throws Exception {
+        var status = importFile("csv", "email,password\ntest_user1@gmail.com,password\n");
+        assert (status.status().equals("failed") && status.error().contains("password"));
+        assert (userRepository.findUserByEmail("test_user1@gmail.com").isEmpty());
+    }
+
+    /**
+     * getStatus function test with an unknown id
+     */
+    @Test
+    public void getStatusIncorrectTest() {
+        try {
+            userImportService.getStatus("unknown");
+            assert (false);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * import the file and wait for the end of the import
+     *
+     * @param format - file format
+     * @param file   - file content
+     * @return import status
+     * @throws Exception if something wrong
+     */
+    private ImportStatusDTO importFile(String format, String file) throws Exception {
+        var status = userImportService.start(FileFormat.of(format),
+                new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+        for (int i = 0; i < 300 && status.status().equals("running"); i++) {
+            Thread.sleep(100);
+            status = userImportService.getStatus(status.id());
+        }
+        return status;
+    }
+}
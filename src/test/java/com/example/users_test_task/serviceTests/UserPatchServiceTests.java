@@ -0,0 +1,166 @@
+package com.example.users_test_task.serviceTests;
+
+import com.example.users_test_task.config.UserProperties;
+import com.example.users_test_task.model.User;
+import com.example.users_test_task.repository.UserRepository;
+import com.example.users_test_task.service.UserPatchService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UserPatchService tests
+ */
+@SpringBootTest
+public class UserPatchServiceTests {
+
+    @Autowired
+    private UserPatchService userPatchService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProperties userProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * patchAll function test with valid and rejected patches
+     *
+     * @param chunkSize - count of patches in one transaction
+     * @throws Exception if something wrong
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "1000",
+            "2"
+    })
+    public void patchAllTest(Integer chunkSize) throws Exception {
+        var users = new ArrayList<User>();
+        for (int i = 1; i <= 4; i++) {
+            var user = new User();
+            user.setEmail("test_user" + i + "@gmail.com");
+            user.setFirstName("test");
+            user.setLastName("user");
+            user.setDateOfBirth(LocalDate.of(2000, 1, i));
+            users.add(userRepository.save(user));
+        }
+
+        var patches = objectMapper.readValue("""
+                [
+                    {"id": %1$d, "patch": {"firstName": "merge", "address": "Kyiv"}},
+                    {"id": %2$d, "version": 0, "patch": [
+                        {"op": "replace", "path": "/lastName", "value": "json"},
+                        {"op": "add", "path": "/dateOfBirth", "value": "1990-05-06"}
+                    ]},
+                    {"id": %3$d, "version": 5, "patch": {"firstName": "changed"}},
+                    {"id": %4$d, "patch": {"email": "test_user1@gmail.com"}},
+                    {"id": %1$d, "patch": {"firstName": "again"}},
+                    {"id": -1, "patch": {"firstName": "unknown"}},
+                    {"id": %3$d, "patch": [{"op": "move", "from": "/firstName", "path": "/lastName"}]},
+                    {"patch": {"firstName": "no id"}}
+                ]
+                """.formatted(users.get(0).getId(), users.get(1).getId(), users.get(2).getId(), users.get(3).getId()),
+                new TypeReference<List<Map<String, Object>>>() {
+                });
+
+        userProperties.getPatch().setChunkSize(chunkSize);
+        try {
+            var results = userPatchService.patchAll(patches);
+            assert (results.size() == 8);
+            for (int i = 0; i < results.size(); i++) {
+                assert (results.get(i).index() == i);
+            }
+            assert (results.get(0).violations().isEmpty() && results.get(1).violations().isEmpty());
+            assert (results.get(0).user().getVersion() == 1);
+            assert (results.get(2).violations().get(0).property().equals("version"));
+            for (int i = 3; i < results.size(); i++) {
+                assert (results.get(i).user() == null && !results.get(i).violations().isEmpty());
+            }
+
+            var first = userRepository.findById(users.get(0).getId()).orElseThrow();
+            assert (first.getFirstName().equals("merge") && first.getAddress().equals("Kyiv"));
+            var second = userRepository.findById(users.get(1).getId()).orElseThrow();
+            assert (second.getLastName().equals("json") && second.getBirthMonthDay() == 506);
+            var third = userRepository.findById(users.get(2).getId()).orElseThrow();
+            assert (third.getFirstName().equals("test"));
+            assert (third.getVersion() == 0);
+            assert (results.get(3).violations().get(0).property().equals("email"));
+            assert (userRepository.findById(users.get(3).getId()).orElseThrow().getEmail().equals("test_user4@gmail.com"));
+        } finally {
+            userProperties.getPatch().setChunkSize(1000);
+            userRepository.deleteAllById(users.stream().map(User::getId).toList());
+        }
+    }
+
+    /**
+     * patchAll function test with a patch which the db refuses, the chunk is rolled back
+     * and its patches are applied one by one
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void patchAllFallbackTest() throws Exception {
+        var users = new ArrayList<User>();
+        for (int i = 1; i <= 3; i++) {
+            var user = new User();
+            user.setEmail("test_user" + i + "@gmail.com");
+            user.setFirstName("test");
+            user.setLastName("user");
+            users.add(userRepository.save(user));
+        }
+        jdbcTemplate.execute("alter table users add constraint test_users_refused check (first_name <> 'refused')");
+
+        var patches = objectMapper.readValue("""
+                [
+                    {"id": %1$d, "version": 0, "patch": {"firstName": "first"}},
+                    {"id": %2$d, "version": 0, "patch": {"firstName": "refused"}},
+                    {"id": %3$d, "patch": {"lastName": "third"}}
+                ]
+                """.formatted(users.get(0).getId(), users.get(1).getId(), users.get(2).getId()),
+                new TypeReference<List<Map<String, Object>>>() {
+                });
+
+        try {
+            var results = userPatchService.patchAll(patches);
+            assert (results.get(0).user().getVersion() == 1 && results.get(2).user().getVersion() == 1);
+            assert (results.get(1).user() == null && results.get(1).violations().get(0).property().equals("user"))
+                    : results.get(1);
+
+            assert (userRepository.findById(users.get(0).getId()).orElseThrow().getFirstName().equals("first"));
+            assert (userRepository.findById(users.get(1).getId()).orElseThrow().getFirstName().equals("test"));
+            assert (userRepository.findById(users.get(2).getId()).orElseThrow().getLastName().equals("third"));
+        } finally {
+            jdbcTemplate.execute("alter table users drop constraint test_users_refused");
+            userRepository.deleteAllById(users.stream().map(User::getId).toList());
+        }
+    }
+
+    /**
+     * patchAll function test with an empty list
+     */
+    @Test
+    public void patchAllEmptyTest() {
+        try {
+            userPatchService.patchAll(List.of());
+            assert (false);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
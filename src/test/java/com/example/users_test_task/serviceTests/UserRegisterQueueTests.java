@@ -0,0 +1,234 @@
+package com.example.users_test_task.serviceTests;
+
+import com.example.users_test_task.config.UserProperties;
+import com.example.users_test_task.dto.RegisterStatusDTO;
+import com.example.users_test_task.dto.UserDTO;
+import com.example.users_test_task.exception.ValidationException;
+import com.example.users_test_task.repository.UserRepository;
+import com.example.users_test_task.service.ReservedEmails;
+import com.example.users_test_task.service.UserRegisterQueue;
+import com.example.users_test_task.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+/**
+ * UserRegisterQueue tests
+ */
+@SpringBootTest
+public class UserRegisterQueueTests {
+
+    @Autowired
+    private UserRegisterQueue userRegisterQueue;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProperties userProperties;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReservedEmails reservedEmails;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * submit function test with valid and rejected users
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void submitTest() throws Exception {
+        enableRegisterQueue();
+        try {
+            var statuses = new ArrayList<RegisterStatusDTO>();
+            for (int i = 1; i <= 3; i++) {
+                statuses.add(userRegisterQueue.submit(createUserDTO("test_user" + i + "@gmail.com", LocalDate.of(2000, 1, i))));
+            }
+            for (var userDTO : new UserDTO[]{
+                    createUserDTO("test_user1@gmail.com", LocalDate.of(2000, 1, 1)),
+                    createUserDTO("test_user", LocalDate.of(2000, 1, 1)),
+                    createUserDTO("test_user4@gmail.com", LocalDate.now().minusYears(1))
+            }) {
+                try {
+                    userRegisterQueue.submit(userDTO);
+                    assert (false);
+                } catch (ValidationException e) {
+                    System.out.println(e.getViolations());
+                }
+            }
+
+            for (var status : statuses) {
+                assert (status.status().equals("queued") && status.userId() == null);
+                for (int i = 0; i < 100 && status.status().equals("queued"); i++) {
+                    Thread.sleep(50);
+                    status = userRegisterQueue.getStatus(status.id());
+                }
+                assert (status.status().equals("saved"));
+                assert (userRepository.findById(status.userId()).orElseThrow().getEmail().startsWith("test_user"));
+            }
+        } finally {
+            userProperties.getRegisterQueue().setEnabled(false);
+            for (int i = 1; i <= 3; i++) {
+                userRepository.findUserByEmail("test_user" + i + "@gmail.com").ifPresent(user -> userRepository.deleteById(user.getId()));
+            }
+        }
+    }
+
+    /**
+     * submit function test if the db refuses one user of a batch, only this user is rejected
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void submitRefusedTest() throws Exception {
+        jdbcTemplate.execute("alter table users add constraint test_users_refused check (first_name <> 'refused')");
+        enableRegisterQueue();
+        try {
+            var saved = userRegisterQueue.submit(createUserDTO("test_user1@gmail.com", LocalDate.of(2000, 1, 1)));
+            var refusedDTO = createUserDTO("test_user2@gmail.com", LocalDate.of(2000, 1, 2));
+            refusedDTO.setFirstName("refused");
+            var refused = userRegisterQueue.submit(refusedDTO);
+
+            saved = waitForResult(saved);
+            refused = waitForResult(refused);
+            assert (saved.status().equals("saved") && saved.userId() != null);
+            assert (refused.status().equals("rejected") && refused.violations().size() == 1);
+            assert (userRepository.findUserByEmail("test_user2@gmail.com").isEmpty());
+        } finally {
+            userProperties.getRegisterQueue().setEnabled(false);
+            jdbcTemplate.execute("alter table users drop constraint test_users_refused");
+            for (int i = 1; i <= 2; i++) {
+                userRepository.findUserByEmail("test_user" + i + "@gmail.com").ifPresent(user -> userRepository.deleteById(user.getId()));
+            }
+        }
+    }
+
+    /**
+     * register with an email of a queued registration is rejected
+     */
+    @Test
+    public void saveReservedEmailTest() throws Exception {
+        assert (reservedEmails.reserve("test_user1@gmail.com"));
+        try {
+            userService.save(createUserDTO("test_user1@gmail.com", LocalDate.of(2000, 1, 1)));
+            assert (false);
+        } catch (ValidationException e) {
+            assert (e.getViolations().get(0).message().equals("Error. This email is already used"));
+        } finally {
+            reservedEmails.release("test_user1@gmail.com");
+            userRepository.findUserByEmail("test_user1@gmail.com").ifPresent(user -> userRepository.deleteById(user.getId()));
+        }
+    }
+
+    /**
+     * submit function test if the queue is disabled
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void submitDisabledTest() throws Exception {
+        try {
+            userRegisterQueue.submit(createUserDTO("test_user1@gmail.com", LocalDate.of(2000, 1, 1)));
+            assert (false);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * getStatus function test with an unknown id
+     */
+    @Test
+    public void getStatusIncorrectTest() {
+        try {
+            userRegisterQueue.getStatus("unknown");
+            assert (false);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * wait until the registration is written or rejected
+     *
+     * @param status - status after submit
+     * @return last status
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private RegisterStatusDTO waitForResult(RegisterStatusDTO status) throws InterruptedException {
+        for (int i = 0; i < 100 && status.status().equals("queued"); i++) {
+            Thread.sleep(50);
+            status = userRegisterQueue.getStatus(status.id());
+        }
+        return status;
+    }
+
+    /**
+     * create user data
+     *
+     * @param email       - user email
+     * @param dateOfBirth - user DoB
+     * @return user data
+     */
+    private static UserDTO createUserDTO(String email, LocalDate dateOfBirth) {
+        var userDTO = new UserDTO();
+        userDTO.setEmail(email);
+        userDTO.setFirstName("test");
+        userDTO.setLastName("user");
+        userDTO.setDateOfBirth(dateOfBirth);
+        return userDTO;
+    }
+
+    /**
+     * the properties are not bound if the queue is enabled with the journal and without the journal dir
+     */
+    @Test
+    public void journalDirRequiredTest() {
+        var runner = new ApplicationContextRunner()
+                .withUserConfiguration(PropertiesConfig.class)
+                .withPropertyValues("users.register-queue.enabled=true");
+
+        runner.run(context -> {
+            var failure = context.getStartupFailure();
+            assert (failure != null);
+            var message = new StringBuilder();
+            for (Throwable e = failure; e != null; e = e.getCause()) {
+                message.append(e.getMessage());
+            }
+            assert (message.toString().contains("users.register-queue.journal-dir is required")) : message;
+        });
+        runner.withPropertyValues("users.register-queue.journal-enabled=false")
+                .run(context -> {
+                    assert (context.getStartupFailure() == null);
+                });
+    }
+
+    /**
+     * enable the register queue with the journal in a temporary directory
+     *
+     * @throws Exception if the directory is not created
+     */
+    private void enableRegisterQueue() throws Exception {
+        var properties = userProperties.getRegisterQueue();
+        if (properties.getJournalDir() == null) {
+            properties.setJournalDir(Files.createTempDirectory("users-journal").toString());
+        }
+        properties.setEnabled(true);
+    }
+
+    @EnableConfigurationProperties(UserProperties.class)
+    static class PropertiesConfig {
+    }
+}
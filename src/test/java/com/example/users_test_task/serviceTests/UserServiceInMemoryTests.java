@@ -0,0 +1,132 @@
+package com.example.users_test_task.serviceTests;
+
+import com.example.users_test_task.controller.UserDataController;
+import com.example.users_test_task.dto.UserDTO;
+import com.example.users_test_task.repository.InMemoryUserStorage;
+import com.example.users_test_task.repository.UserStorage;
+import com.example.users_test_task.service.EmailIndex;
+import com.example.users_test_task.service.UserPatchService;
+import com.example.users_test_task.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UserService tests with the memory storage engine, all the UserServiceTests run with it too.
+ * The context is started without a DataSource and JPA
+ */
+@SpringBootTest(properties = "users.storage=memory")
+public class UserServiceInMemoryTests extends UserServiceTests {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private EmailIndex emailIndex;
+
+    @Autowired
+    private UserDataController userDataController;
+
+    /**
+     * there is no db in the context, users are saved to the memory storage
+     *
+     * @throws Exception if something is wrong
+     */
+    @Test
+    public void noDbTest() throws Exception {
+        assert (userStorage instanceof InMemoryUserStorage);
+        assert (applicationContext.getBeanNamesForType(DataSource.class).length == 0);
+        assert (applicationContext.getBeanNamesForType(EntityManagerFactory.class).length == 0);
+        assert (applicationContext.getBeanNamesForType(UserPatchService.class).length == 0);
+
+        var user = userService.save(createUser("test_user@gmail.com"));
+        try {
+            assert (userService.getUserByEmail("test_user@gmail.com").getId().equals(user.getId()));
+            assert (emailIndex.mightContain("test_user@gmail.com"));
+        } finally {
+            userService.delete(user.getId());
+        }
+        assert (userStorage.findUserByEmail("test_user@gmail.com").isEmpty());
+    }
+
+    /**
+     * functions which write the db directly are rejected with the memory engine
+     */
+    @Test
+    public void unsupportedFunctionsTest() {
+        var patch = userDataController.updateUsersFields(List.of(Map.of("id", 1, "patch", Map.of("firstName", "name"))));
+        assert (patch.getStatusCode() == HttpStatus.FORBIDDEN && patch.getBody().toString().contains("batch patch"));
+
+        var imported = userDataController.importUsers("ndjson", new ByteArrayInputStream(new byte[0]));
+        assert (imported.getStatusCode() == HttpStatus.FORBIDDEN && imported.getBody().toString().contains("import"));
+
+        var exported = userDataController.exportUsers("ndjson", false);
+        assert (exported.getStatusCode() == HttpStatus.FORBIDDEN);
+
+        var registered = userDataController.saveUserAsync(createUser("test_user@gmail.com"));
+        assert (registered.getStatusCode() == HttpStatus.FORBIDDEN
+                && registered.getBody().toString().contains("asynchronous registration"));
+        assert (userStorage.findUserByEmail("test_user@gmail.com").isEmpty());
+    }
+
+    private static UserDTO createUser(String email) {
+        var user = new UserDTO();
+        user.setEmail(email);
+        user.setFirstName("test");
+        user.setLastName("user");
+        user.setDateOfBirth(LocalDate.of(2000, 1, 1));
+        return user;
+    }
+
+    /**
+     * the memory engine has no transactions. The transactional tests of UserServiceTests need a transaction
+     * manager, so they run with one which does nothing
+     */
+    @TestConfiguration
+    static class NoTransactionConfig {
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new AbstractPlatformTransactionManager() {
+
+                @Override
+                protected Object doGetTransaction() {
+                    return new Object();
+                }
+
+                @Override
+                protected void doBegin(Object transaction, TransactionDefinition definition) {
+                }
+
+                @Override
+                protected void doCommit(DefaultTransactionStatus status) {
+                }
+
+                @Override
+                protected void doRollback(DefaultTransactionStatus status) {
+                }
+            };
+        }
+    }
+}
@@ -1,11 +1,24 @@
 package com.example.users_test_task.serviceTests;
 
+import com.example.users_test_task.config.UserProperties;
 import com.example.users_test_task.dto.UserDTO;
 import com.example.users_test_task.exception.ValidationException;
+import com.example.users_test_task.exception.VersionConflictException;
 import com.example.users_test_task.mapper.UserMapper;
 import com.example.users_test_task.model.User;
 import com.example.users_test_task.repository.UserRepository;
+import com.example.users_test_task.repository.UserStorage;
+import com.example.users_test_task.service.AgeCutoff;
+import com.example.users_test_task.service.EmailIndex;
 import com.example.users_test_task.service.UserService;
+import com.example.users_test_task.service.StatsGroup;
+import com.example.users_test_task.service.UserStatsSummary;
+import com.example.users_test_task.service.Violation;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -13,16 +26,23 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.lang.reflect.Field;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 /**
- * UserService tests
+ * UserService tests. Users are read and deleted through the user storage, so the same tests run with
+ * the memory engine in UserServiceInMemoryTests. Tests which change rows with SQL run only with the jpa engine,
+ * the repository and the jdbc template are not created with the memory engine
  */
 @SpringBootTest
 public class UserServiceTests {
@@ -31,11 +51,35 @@ public class UserServiceTests {
     private UserService userService;
 
     @Autowired
+    private UserProperties userProperties;
+
+    @Autowired
+    private AgeCutoff ageCutoff;
+
+    @Autowired
+    private UserStatsSummary userStatsSummary;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired(required = false)
     private UserRepository userRepository;
 
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private EmailIndex emailIndex;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired(required = false)
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private User testUser;
 
     /**
@@ -58,8 +102,8 @@ public class UserServiceTests {
             "test_user, test, user, 2000-01-01, address, 1234567890, false",
             "test_user@gmail.com, , user, 2000-01-01, address, 1234567890, false",
             "test_user@gmail.com, test, , 2000-01-01, address, 1234567890, false",
-            "test_user@gmail.com, test, user, 2025-01-01, address, 1234567890, false",
-            "test_user@gmail.com, test, user, 2007-01-01, address, 1234567890, false"
+            "test_user@gmail.com, test, user, 2099-01-01, address, 1234567890, false",
+            "test_user@gmail.com, test, user, 2015-01-01, address, 1234567890, false"
     })
     public void saveUserTest(String email, String firstName, String lastName, LocalDate dateOfBirth, String address, String phoneNumber, Boolean expectedResult) {
         var user = new UserDTO();
@@ -79,9 +123,9 @@ public class UserServiceTests {
                 assert (false);
             }
 
-            assert (userRepository.findUserByEmail(email).isPresent());
+            assert (userStorage.findUserByEmail(email).isPresent());
 
-            userRepository.delete(userRepository.findUserByEmail(email).get());
+            deleteUser(userStorage.findUserByEmail(email).get());
         } catch (Exception e) {
             if (expectedResult) {
                 System.out.printf("Error in case: %s - %s - %s - %s - %s - %s",
@@ -96,6 +140,113 @@ public class UserServiceTests {
         }
     }
 
+    /**
+     * save function test with too long text fields, they are reported as their own violations
+     * and not as a used email
+     *
+     * @param field - name of the too long field
+     */
+    @ParameterizedTest
+    @CsvSource({"firstName", "lastName", "address"})
+    public void saveTooLongFieldTest(String field) {
+        var user = createUserDTO("test_user@gmail.com", LocalDate.of(2000, 1, 1));
+        switch (field) {
+            case "firstName" -> user.setFirstName("f".repeat(300));
+            case "lastName" -> user.setLastName("l".repeat(300));
+            default -> user.setAddress("a".repeat(300));
+        }
+
+        try {
+            userService.save(user);
+            assert (false);
+        } catch (ValidationException e) {
+            assert (e.getViolations().size() == 1 && e.getViolations().get(0).property().equals(field))
+                    : e.getViolations();
+        }
+        assert (userStorage.findUserByEmail("test_user@gmail.com").isEmpty());
+    }
+
+    /**
+     * save function test with an email written to db without the email index, the unique constraint
+     * violation is reported as a used email
+     */
+    @Test
+    public void saveEmailUsedInDbTest() {
+        assumeJpaStorage();
+        jdbcTemplate.update("insert into users (id, email, first_name, last_name, version) " +
+                "values (nextval('users_seq'), 'test_user_sql@gmail.com', 'test', 'user', 0)");
+
+        try {
+            userService.save(createUserDTO("test_user_sql@gmail.com", LocalDate.of(2000, 1, 1)));
+            assert (false);
+        } catch (ValidationException e) {
+            assert (e.getViolations().equals(List.of(new Violation("email", "Error. This email is already used"))))
+                    : e.getViolations();
+        } finally {
+            jdbcTemplate.update("delete from users where email = 'test_user_sql@gmail.com'");
+        }
+    }
+
+    /**
+     * saveAll function test
+     */
+    @Test
+    public void saveAllTest() {
+        setUpTestUser();
+
+        var users = List.of(
+                createUserDTO("test_user1@gmail.com", LocalDate.of(2000, 1, 1)),
+                createUserDTO("test_user1@gmail.com", LocalDate.of(2000, 1, 1)),
+                createUserDTO("test_user@gmail.com", LocalDate.of(2000, 1, 1)),
+                createUserDTO("test_user2", LocalDate.of(2000, 1, 1)),
+                createUserDTO("test_user3@gmail.com", LocalDate.now().minusYears(10))
+        );
+
+        var results = userService.saveAll(users);
+
+        try {
+            assert (results.size() == users.size());
+            assert (results.get(0).user() != null && results.get(0).violations().isEmpty());
+            for (int i = 1; i < results.size(); i++) {
+                assert (results.get(i).index() == i);
+                assert (results.get(i).user() == null && !results.get(i).violations().isEmpty());
+            }
+            assert (userStorage.findUserByEmail("test_user1@gmail.com").isPresent());
+        } finally {
+            userStorage.findUserByEmail("test_user1@gmail.com").ifPresent(this::deleteUser);
+            deleteTestUser();
+        }
+    }
+
+    /**
+     * saveAll function test with an email written to db without the email index. The batch is refused
+     * by the unique constraint, so the users are saved one by one with their own results
+     */
+    @Test
+    public void saveAllEmailUsedInDbTest() {
+        assumeJpaStorage();
+        jdbcTemplate.update("insert into users (id, email, first_name, last_name, version) " +
+                "values (nextval('users_seq'), 'test_user_sql@gmail.com', 'test', 'user', 0)");
+
+        try {
+            var results = userService.saveAll(List.of(
+                    createUserDTO("test_user1@gmail.com", LocalDate.of(2000, 1, 1)),
+                    createUserDTO("test_user_sql@gmail.com", LocalDate.of(2000, 1, 1)),
+                    createUserDTO("test_user2@gmail.com", LocalDate.of(2000, 1, 1))
+            ));
+
+            assert (results.get(0).user() != null && results.get(2).user() != null);
+            assert (results.get(1).user() == null
+                    && results.get(1).violations().equals(List.of(new Violation("email", "Error. This email is already used"))));
+            assert (userRepository.findUserByEmail("test_user1@gmail.com").orElseThrow().getId()
+                    .equals(results.get(0).user().getId()));
+            assert (userRepository.findUserByEmail("test_user2@gmail.com").isPresent());
+        } finally {
+            jdbcTemplate.update("delete from users where email in " +
+                    "('test_user_sql@gmail.com', 'test_user1@gmail.com', 'test_user2@gmail.com')");
+        }
+    }
+
     /**
      * updateFields function test
      *
@@ -137,7 +288,7 @@ public class UserServiceTests {
         }
 
         deleteTestUser();
-        userRepository.delete(updatedUser);
+        deleteUser(updatedUser);
     }
 
     /**
@@ -151,7 +302,10 @@ public class UserServiceTests {
                 Arguments.of(createTestData("id", "0", "email", "test_user@gmail.com"), false),
                 Arguments.of(createTestData("id", "-1", "email", "test_user1@gmail.com"), false),
                 Arguments.of(createTestData("id", "0", "email", "test_user1@gmail.com", "firstName", "new name"), true),
-                Arguments.of(createTestData("email", "test_user1@gmail.com", "firstName", "new name"), false)
+                Arguments.of(createTestData("email", "test_user1@gmail.com", "firstName", "new name"), false),
+                Arguments.of(createTestData("id", "0", "dateOfBirth", "1990-05-05"), true),
+                Arguments.of(createTestData("id", "0", "dateOfBirth", "05.05.1990"), false),
+                Arguments.of(createTestData("id", "0", "unknownField", "value"), false)
         );
     }
 
@@ -190,8 +344,8 @@ public class UserServiceTests {
             "test_user, test, user, 2000-01-01, address, 1234567890, false",
             "test_user1@gmail.com, , user, 2000-01-01, address, 1234567890, false",
             "test_user1@gmail.com, test, , 2000-01-01, address, 1234567890, false",
-            "test_user1@gmail.com, test, user, 2025-01-01, address, 1234567890, false",
-            "test_user1@gmail.com, test, user, 2007-01-01, address, 1234567890, false"
+            "test_user1@gmail.com, test, user, 2099-01-01, address, 1234567890, false",
+            "test_user1@gmail.com, test, user, 2015-01-01, address, 1234567890, false"
     })
     public void updateTest(String email, String firstName, String lastName, LocalDate dateOfBirth, String address, String phoneNumber, Boolean expectedResult) {
         setUpTestUser();
@@ -212,7 +366,7 @@ public class UserServiceTests {
                     userMapper.toUser(user)
             ));
 
-            userRepository.delete(userRepository.findUserByEmail(email).get());
+            deleteUser(userStorage.findUserByEmail(email).get());
         } catch (Exception e) {
             deleteTestUser();
             if (expectedResult) {
@@ -275,6 +429,187 @@ public class UserServiceTests {
         deleteTestUser();
     }
 
+    /**
+     * check does the email index knows emails saved through the repository
+     * and does a unique email violation is reported as a used email
+     */
+    @Test
+    public void emailIndexTest() {
+        setUpTestUser();
+
+        try {
+            assert (emailIndex.mightContain(testUser.getEmail()));
+
+            emailIndex.remove(testUser.getEmail());
+            var user = createUserDTO(testUser.getEmail(), LocalDate.of(2000, 1, 1));
+            try {
+                userService.save(user);
+                assert (false);
+            } catch (ValidationException e) {
+                assert (e.getViolations().equals(List.of(new Violation("email", "Error. This email is already used"))));
+            }
+        } finally {
+            deleteTestUser();
+        }
+
+        assert (!emailIndex.mightContain(testUser.getEmail()));
+    }
+
+    /**
+     * check does cached users are evicted on update and delete
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void userCacheTest() throws Exception {
+        setUpTestUser();
+        var hits = getUsersCacheHitCount();
+
+        try {
+            assert (userService.getUser(testUser.getId()).equals(testUser));
+            assert (userService.getUserByEmail(testUser.getEmail()).equals(testUser));
+            assert (getUsersCacheHitCount() > hits);
+
+            var fields = new LinkedHashMap<String, Object>();
+            fields.put("id", testUser.getId());
+            fields.put("firstName", "new name");
+            userService.updateFields(fields);
+
+            assert (userService.getUser(testUser.getId()).getFirstName().equals("new name"));
+        } finally {
+            userService.delete(testUser.getId());
+        }
+
+        try {
+            userService.getUser(testUser.getId());
+            assert (false);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * check does update with an old expected version is rejected
+     * and does update without expected version is retried after a concurrent change
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void optimisticLockTest() throws Exception {
+        setUpTestUser();
+
+        try {
+            var version = userService.getUser(testUser.getId()).getVersion();
+            var fields = new LinkedHashMap<String, Object>();
+            fields.put("id", testUser.getId());
+            fields.put("firstName", "new name");
+
+            var updated = userService.updateFields(fields, version);
+            assert (updated.getVersion() == version + 1);
+
+            try {
+                userService.updateFields(fields, version);
+                assert (false);
+            } catch (VersionConflictException e) {
+                System.out.println(e.getMessage());
+            }
+
+            if (userProperties.isMemoryStorage()) {
+                return;
+            }
+            // a concurrent change in db which the cached user does not know
+            userService.getUser(testUser.getId());
+            jdbcTemplate.update("update users set version = version + 1 where id = ?", testUser.getId());
+            var retries = meterRegistry.find("users.retry.attempts").counters().stream()
+                    .mapToDouble(Counter::count).sum();
+
+            fields.put("firstName", "newest name");
+            assert (userService.updateFields(fields).getFirstName().equals("newest name"));
+            assert (meterRegistry.find("users.retry.attempts").counters().stream()
+                    .mapToDouble(Counter::count).sum() > retries);
+        } finally {
+            userService.delete(testUser.getId());
+        }
+    }
+
+    /**
+     * does all violations of a user are collected in one exception without stack trace
+     */
+    @Test
+    @Transactional
+    public void saveUserViolationsTest() {
+        var user = createUserDTO("test_user", LocalDate.now().minusYears(10));
+        user.setPhoneNumber("123");
+
+        try {
+            userService.save(user);
+            assert (false);
+        } catch (ValidationException e) {
+            var properties = e.getViolations().stream().map(Violation::property).sorted().toList();
+            assert (properties.equals(List.of("dateOfBirth", "email", "phoneNumber")));
+            assert (e.getStackTrace().length == 0);
+        }
+    }
+
+    /**
+     * does validation, email check and repository calls are timed
+     */
+    @Test
+    @Transactional
+    public void timersTest() {
+        var validations = getTimerCount("users.validation");
+        var emailChecks = getTimerCount("users.email.check");
+        var repositoryCalls = getTimerCount("spring.data.repository.invocations");
+
+        try {
+            userService.save(createUserDTO("test_user_timers@gmail.com", LocalDate.of(2000, 1, 1)));
+        } catch (ValidationException e) {
+            assert (false);
+        }
+
+        assert (getTimerCount("users.validation") > validations);
+        assert (getTimerCount("users.email.check") > emailChecks);
+        assert (userProperties.isMemoryStorage() || getTimerCount("spring.data.repository.invocations") > repositoryCalls);
+    }
+
+    /**
+     * get count of all timers with this name
+     *
+     * @param name - timer name
+     * @return count of timed calls
+     */
+    private long getTimerCount(String name) {
+        return meterRegistry.find(name).timers().stream()
+                .mapToLong(Timer::count)
+                .sum();
+    }
+
+    /**
+     * does the min age is taken from properties
+     */
+    @Test
+    public void minAgeTest() {
+        var minAge = userProperties.getMinAge();
+        var dateOfBirth = LocalDate.now().minusYears(minAge);
+
+        try {
+            userService.isAgeValid(dateOfBirth);
+            assert (ageCutoff.getCutoff().equals(dateOfBirth));
+
+            userProperties.setMinAge(minAge + 1);
+            ageCutoff.refresh();
+            try {
+                userService.isAgeValid(dateOfBirth);
+                assert (false);
+            } catch (IllegalArgumentException e) {
+                assert (e.getMessage().equals("Error. I'm sorry, but you're too young"));
+            }
+        } finally {
+            userProperties.setMinAge(minAge);
+            ageCutoff.refresh();
+        }
+    }
+
     /**
      * isDataValid function test
      *
@@ -284,7 +619,7 @@ public class UserServiceTests {
     @ParameterizedTest
     @CsvSource({
             "2000-01-01, true",
-            "2026-01-01, false",
+            "2099-01-01, false",
             ", false"
     })
     public void isDataValidTest(LocalDate date, Boolean expectedResult) {
@@ -308,7 +643,25 @@ public class UserServiceTests {
 
         deleteTestUser();
 
-        assert (userRepository.findUserByEmail(testUser.getEmail()).isEmpty());
+        assert (userStorage.findUserByEmail(testUser.getEmail()).isEmpty());
+    }
+
+    /**
+     * deleteAll function test
+     */
+    @Test
+    public void deleteAllTest() {
+        var users = userService.saveAll(List.of(
+                createUserDTO("test_user1@gmail.com", LocalDate.of(1990, 1, 1)),
+                createUserDTO("test_user2@gmail.com", LocalDate.of(1990, 1, 1))
+        ));
+        var ids = new ArrayList<Long>();
+        users.forEach(result -> ids.add(result.user().getId()));
+        ids.add(-1L);
+
+        assert (userService.deleteAll(ids) == 2);
+        assert (userStorage.findUserByEmail("test_user1@gmail.com").isEmpty());
+        assert (userStorage.findUserByEmail("test_user2@gmail.com").isEmpty());
     }
 
     /**
@@ -342,6 +695,304 @@ public class UserServiceTests {
         deleteTestUser();
     }
 
+    /**
+     * updateFields and update function test: only the changed columns are written
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void updateChangedFieldsTest() throws Exception {
+        assumeJpaStorage();
+        setUpTestUser();
+
+        try {
+            // a column changed in db after the user is cached must not be overwritten by the cached value
+            userService.getUser(testUser.getId());
+            jdbcTemplate.update("update users set address = 'changed' where id = ?", testUser.getId());
+
+            var fields = new LinkedHashMap<String, Object>();
+            fields.put("id", testUser.getId());
+            fields.put("firstName", "new name");
+            fields.put("dateOfBirth", "1999-12-31");
+            var updated = userService.updateFields(fields);
+            assert (updated.getVersion() == testUser.getVersion() + 1);
+
+            var saved = userStorage.findById(testUser.getId()).orElseThrow();
+            assert (saved.getAddress().equals("changed") && saved.getFirstName().equals("new name"));
+            assert (saved.getBirthMonthDay() == 1231 && saved.getVersion().equals(updated.getVersion()));
+
+            var unchanged = userService.updateFields(fields);
+            assert (unchanged.getVersion().equals(updated.getVersion()));
+
+            var userDTO = createUserDTO("test_user1@gmail.com", saved.getDateOfBirth());
+            userDTO.setId(saved.getId());
+            userDTO.setAddress(saved.getAddress());
+            var renamed = userService.update(userDTO);
+            assert (renamed.getVersion() == updated.getVersion() + 1);
+            assert (userService.getUserByEmail("test_user1@gmail.com").getId().equals(saved.getId()));
+        } finally {
+            userRepository.deleteById(testUser.getId());
+        }
+    }
+
+    /**
+     * getUsersPageByDates function test
+     */
+    @Test
+    public void getUsersPageByDatesTest() {
+        var users = userService.saveAll(List.of(
+                createUserDTO("test_user1@gmail.com", LocalDate.of(1990, 1, 1)),
+                createUserDTO("test_user2@gmail.com", LocalDate.of(1990, 1, 1)),
+                createUserDTO("test_user3@gmail.com", LocalDate.of(1990, 1, 2))
+        ));
+
+        try {
+            var from = LocalDate.of(1990, 1, 1);
+            var to = LocalDate.of(1990, 1, 2);
+
+            var firstPage = userService.getUsersPageByDates(from, to, 2, null);
+            assert (firstPage.users().size() == 2 && firstPage.nextPageToken() != null);
+
+            var secondPage = userService.getUsersPageByDates(from, to, 2, firstPage.nextPageToken());
+            assert (secondPage.users().size() == 1 && secondPage.nextPageToken() == null);
+            assert (secondPage.users().get(0).getEmail().equals("test_user3@gmail.com"));
+
+            var streamed = new ArrayList<User>();
+            userService.streamUsersByDates(from, to, streamed::add);
+            assert (streamed.size() == 3);
+        } finally {
+            users.forEach(result -> deleteUser(result.user()));
+        }
+    }
+
+    /**
+     * getUsersByDates and getUsersPageByDates function test with selected fields
+     */
+    @Test
+    public void getUsersByDatesFieldsTest() {
+        var users = userService.saveAll(List.of(
+                createUserDTO("test_user1@gmail.com", LocalDate.of(1990, 1, 1)),
+                createUserDTO("test_user2@gmail.com", LocalDate.of(1990, 1, 1)),
+                createUserDTO("test_user3@gmail.com", LocalDate.of(1990, 1, 2))
+        ));
+
+        try {
+            var from = LocalDate.of(1990, 1, 1);
+            var to = LocalDate.of(1990, 1, 2);
+
+            var list = userService.getUsersByDates(from, to, "email, id,email");
+            assert (list.size() == 3 && list.get(0).keySet().equals(Set.of("email", "id")));
+            assert (list.get(0).get("id").equals(users.get(0).user().getId()));
+
+            var firstPage = userService.getUsersPageByDates(from, to, 2, null, "email");
+            assert (firstPage.users().size() == 2 && firstPage.nextPageToken() != null);
+            assert (firstPage.users().get(0).equals(Map.of("email", "test_user1@gmail.com")));
+
+            var secondPage = userService.getUsersPageByDates(from, to, 2, firstPage.nextPageToken(), "email,dateOfBirth");
+            assert (secondPage.users().size() == 1 && secondPage.nextPageToken() == null);
+            assert (secondPage.users().get(0).equals(Map.of("email", "test_user3@gmail.com", "dateOfBirth", to)));
+        } finally {
+            users.forEach(result -> deleteUser(result.user()));
+        }
+    }
+
+    /**
+     * getUsersPageByBirthday function test with a range around the year end
+     */
+    @Test
+    public void getUsersPageByBirthdayTest() {
+        var users = userService.saveAll(List.of(
+                createUserDTO("test_user1@gmail.com", LocalDate.of(1990, 12, 31)),
+                createUserDTO("test_user2@gmail.com", LocalDate.of(1985, 1, 1)),
+                createUserDTO("test_user3@gmail.com", LocalDate.of(1970, 1, 2)),
+                createUserDTO("test_user4@gmail.com", LocalDate.of(1990, 6, 15))
+        ));
+
+        try {
+            var firstPage = userService.getUsersPageByBirthday("12-31", "01-01", 1, null);
+            assert (firstPage.users().size() == 1 && firstPage.nextPageToken() != null);
+            assert (firstPage.users().get(0).getEmail().equals("test_user1@gmail.com"));
+
+            var secondPage = userService.getUsersPageByBirthday("12-31", "01-01", 1, firstPage.nextPageToken());
+            assert (secondPage.users().size() == 1 && secondPage.nextPageToken() == null);
+            assert (secondPage.users().get(0).getEmail().equals("test_user2@gmail.com"));
+
+            var oneDay = userService.getUsersPageByBirthday("06-15", null, null, null);
+            assert (oneDay.users().size() == 1 && oneDay.users().get(0).getEmail().equals("test_user4@gmail.com"));
+
+            if (userProperties.isMemoryStorage()) {
+                return;
+            }
+            jdbcTemplate.update("update users set birth_month_day = null where email = 'test_user3@gmail.com'");
+            userService.fillBirthMonthDays();
+            var filled = userService.getUsersPageByBirthday("01-02", "01-02", null, null);
+            assert (filled.users().size() == 1 && filled.users().get(0).getBirthMonthDay() == 102);
+        } finally {
+            userService.deleteAll(users.stream().map(result -> result.user().getId()).toList());
+        }
+    }
+
+    /**
+     * getUsersStats function test with counts from db and from the in-memory summary
+     *
+     * @throws Exception if something wrong
+     */
+    @Test
+    public void getUsersStatsTest() throws Exception {
+        var users = userService.saveAll(List.of(
+                createUserDTO("test_user1@gmail.com", LocalDate.of(1901, 3, 1)),
+                createUserDTO("test_user2@gmail.com", LocalDate.of(1902, 3, 1)),
+                createUserDTO("test_user3@gmail.com", LocalDate.of(1902, 5, 1))
+        ));
+        var from = LocalDate.of(1900, 1, 1);
+        var to = LocalDate.of(1905, 12, 31);
+
+        try {
+            var byYear = userService.getUsersStats(from, to, "year", null);
+            assert (byYear.counts().equals(Map.of(1901, 1L, 1902, 2L)) && byYear.total() == 3);
+            var byMonth = userService.getUsersStats(from, to, "month", null);
+            assert (byMonth.counts().equals(Map.of(3, 2L, 5, 1L)));
+            var byAge = userService.getUsersStats(from, to, "age", 1);
+            var byAgeBuckets = userService.getUsersStats(from, to, "age", 100);
+            assert (byAge.total() == 3 && byAgeBuckets.counts().equals(Map.of(100, 3L)));
+
+            userProperties.getStats().setSummaryEnabled(true);
+            userStatsSummary.warmUp();
+            assert (userStatsSummary.isReady());
+            assert (userService.getUsersStats(from, to, "year", null).equals(byYear));
+            assert (userService.getUsersStats(from, to, "month", null).equals(byMonth));
+            assert (userService.getUsersStats(from, to, "age", 1).equals(byAge));
+
+            var fields = new LinkedHashMap<String, Object>();
+            fields.put("id", users.get(2).user().getId());
+            fields.put("dateOfBirth", "1903-05-01");
+            userService.updateFields(fields);
+            userService.delete(users.get(0).user().getId());
+
+            byYear = userService.getUsersStats(from, to, "year", null);
+            assert (byYear.counts().equals(Map.of(1902, 1L, 1903, 1L)) && byYear.total() == 2);
+        } finally {
+            userProperties.getStats().setSummaryEnabled(false);
+            userStatsSummary.warmUp();
+            userService.deleteAll(users.stream().map(result -> result.user().getId()).toList());
+        }
+    }
+
+    /**
+     * UserStatsSummary test, changes committed before the summary is ready are applied after the load
+     */
+    @Test
+    public void userStatsSummaryPendingChangesTest() {
+        var from = LocalDate.of(1800, 1, 1);
+        var to = LocalDate.of(1800, 12, 31);
+
+        try {
+            userProperties.getStats().setSummaryEnabled(true);
+            assert (!userStatsSummary.isReady());
+            userStatsSummary.put(-1L, LocalDate.of(1800, 3, 1));
+            userStatsSummary.put(-2L, LocalDate.of(1800, 3, 1));
+            userStatsSummary.put(-2L, LocalDate.of(1800, 4, 1));
+            userStatsSummary.put(-3L, LocalDate.of(1800, 5, 1));
+            userStatsSummary.remove(-3L);
+
+            userStatsSummary.warmUp();
+            assert (userStatsSummary.count(from, to, StatsGroup.MONTH).equals(Map.of(3, 1L, 4, 1L)));
+        } finally {
+            userProperties.getStats().setSummaryEnabled(false);
+            userStatsSummary.warmUp();
+        }
+    }
+
+    /**
+     * getUsersPageByDates function test with incorrect values
+     *
+     * @param size      - page size
+     * @param pageToken - page token
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "0, ",
+            "1000000, ",
+            "10, incorrect"
+    })
+    public void getUsersPageByDatesIncorrectTest(Integer size, String pageToken) {
+        try {
+            userService.getUsersPageByDates(LocalDate.of(1990, 1, 1), LocalDate.of(1990, 1, 2), size, pageToken);
+            assert (false);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * getUsersByDates function test with incorrect fields
+     *
+     * @param fields - selected fields
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "password",
+            "'email,,id'",
+            "birthMonthDay"
+    })
+    public void getUsersByDatesIncorrectFieldsTest(String fields) {
+        try {
+            userService.getUsersByDates(LocalDate.of(1990, 1, 1), LocalDate.of(1990, 1, 2), fields);
+            assert (false);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * getUsersPageByBirthday function test with incorrect values
+     *
+     * @param from      - from month and day
+     * @param to        - to month and day
+     * @param pageToken - page token
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "13-01, , ",
+            "02-30, , ",
+            "2000-01-01, , ",
+            "01-01, 1-1, ",
+            "01-01, 01-02, incorrect"
+    })
+    public void getUsersPageByBirthdayIncorrectTest(String from, String to, String pageToken) {
+        try {
+            userService.getUsersPageByBirthday(from, to, 10, pageToken);
+            assert (false);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * get hit count of the users cache
+     *
+     * @return hit count
+     */
+    private long getUsersCacheHitCount() {
+        return ((Cache<?, ?>) cacheManager.getCache("users").getNativeCache()).stats().hitCount();
+    }
+
+    /**
+     * create user data to save
+     *
+     * @param email       - user email
+     * @param dateOfBirth - user DoB
+     * @return user data
+     */
+    private UserDTO createUserDTO(String email, LocalDate dateOfBirth) {
+        var user = new UserDTO();
+        user.setEmail(email);
+        user.setFirstName("test");
+        user.setLastName("user");
+        user.setDateOfBirth(dateOfBirth);
+        return user;
+    }
+
     /**
      * set up the test user
      */
@@ -353,13 +1004,34 @@ public class UserServiceTests {
         testUser.setLastName("user");
         testUser.setDateOfBirth(LocalDate.of(2000, 1, 1));
 
-        testUser = userRepository.save(testUser);
+        testUser = userStorage.save(testUser);
     }
 
     /**
-     * remove the test user from db
+     * remove the test user from the storage
      */
     private void deleteTestUser() {
-        userRepository.delete(testUser);
+        deleteUser(testUser);
+    }
+
+    /**
+     * delete the user so that the entity listener removes its email from the email index. The jpa engine
+     * deletes with one statement without listeners, so the entity is deleted by the repository
+     *
+     * @param user - user to delete
+     */
+    private void deleteUser(User user) {
+        if (userProperties.isMemoryStorage()) {
+            userStorage.deleteById(user.getId());
+        } else {
+            userRepository.delete(user);
+        }
+    }
+
+    /**
+     * skip the test if it changes rows with SQL, which the memory engine does not see
+     */
+    private void assumeJpaStorage() {
+        Assumptions.assumeFalse(userProperties.isMemoryStorage(), "the test changes rows in db");
     }
 }
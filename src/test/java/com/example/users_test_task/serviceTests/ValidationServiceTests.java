@@ -2,7 +2,10 @@ package com.example.users_test_task.serviceTests;
 
 import com.example.users_test_task.exception.ValidationException;
 import com.example.users_test_task.model.User;
+import com.example.users_test_task.service.UserValidator;
 import com.example.users_test_task.service.ValidationService;
+import com.example.users_test_task.service.Violation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +13,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Comparator;
 
 /**
  * ValidationService tests
@@ -20,6 +24,15 @@ public class ValidationServiceTests {
     @Autowired
     private ValidationService validationService;
 
+    @Autowired
+    private UserValidator userValidator;
+
+    @Autowired
+    private Validator validator;
+
+    private static final Comparator<Violation> VIOLATION_ORDER = Comparator.comparing(Violation::property)
+            .thenComparing(Violation::message);
+
     /**
      * isValidUser function test
      *
@@ -40,7 +53,7 @@ public class ValidationServiceTests {
             "test_user, test, user, 2000-01-01, address, 1234567890, false",
             "test_user@gmail.com, , user, 2000-01-01, address, 1234567890, false",
             "test_user@gmail.com, test, , 2000-01-01, address, 1234567890, false",
-            "test_user@gmail.com, test, user, 2025-01-01, address, 1234567890, false"
+            "test_user@gmail.com, test, user, 2099-01-01, address, 1234567890, false"
     })
     public void isValidUserTest(String email, String firstName, String lastName, LocalDate dateOfBirth, String address, String phoneNumber, Boolean expectedResult) {
         var user = new User();
@@ -62,4 +75,107 @@ public class ValidationServiceTests {
             System.out.println(e.getViolations());
         }
     }
+
+    /**
+     * does the fast UserValidator returns the same violations as the generic validator
+     *
+     * @param email       - user email
+     * @param firstName   - user first name
+     * @param lastName    - user last name
+     * @param dateOfBirth - user DoB in days from today
+     * @param phoneNumber - user phone number
+     */
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', quoteCharacter = '"', value = {
+            "test_user@gmail.com | test | user | -9000 | 1234567890",
+            "TEST.User@Gmail.COM | test | user | -9000 | ",
+            "o'neil+tag-1@gmail.com | test | user | -9000 | \"\"",
+            "test@localhost | test | user | -1 | 123456789",
+            "test@a.b-c.d | test | user | 0 | 12345678901",
+            "test@gm--ail.com | test | user | 1 | 12345abcde",
+            "\"\" | test | user | | 1234567890",
+            "\" \" | \" \" | \"\t\" | | 1234567890",
+            " | | | | ",
+            "test_user | test | user | -9000 | 1234567890",
+            ".test@gmail.com | test | user | -9000 | 1234567890",
+            "test.@gmail.com | test | user | -9000 | 1234567890",
+            "te..st@gmail.com | test | user | -9000 | 1234567890",
+            "test@gmail.com. | test | user | -9000 | 1234567890",
+            "test@.gmail.com | test | user | -9000 | 1234567890",
+            "test@gmail..com | test | user | -9000 | 1234567890",
+            "test@-gmail.com | test | user | -9000 | 1234567890",
+            "test@gmail-.com | test | user | -9000 | 1234567890",
+            "test@gmail_1.com | test | user | -9000 | 1234567890",
+            "test user@gmail.com | test | user | -9000 | 1234567890",
+            "test@@gmail.com | test | user | -9000 | 1234567890",
+            "test@gmail@com | test | user | -9000 | 1234567890",
+            "@gmail.com | test | user | -9000 | 1234567890",
+            "test@ | test | user | -9000 | 1234567890",
+            "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa@gmail.com | test | user | -9000 | 1234567890",
+            "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa@gmail.com | test | user | -9000 | 1234567890",
+            "test@bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb.com | test | user | -9000 | 1234567890",
+            "test@bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb.com | test | user | -9000 | 1234567890",
+            "тест@gmail.com | test | user | -9000 | 1234567890",
+            "test@пошта.укр | test | user | -9000 | 1234567890",
+            "\"\"\"test user\"\"@gmail.com\" | test | user | -9000 | 1234567890",
+            "test@[127.0.0.1] | test | user | -9000 | 1234567890",
+            "test@[IPv6:::1] | test | user | -9000 | 1234567890"
+    })
+    public void userValidatorConformanceTest(String email, String firstName, String lastName, Integer dateOfBirth,
+                                             String phoneNumber) {
+        var user = new User();
+        user.setEmail(email);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setDateOfBirth(dateOfBirth == null ? null : LocalDate.now().plusDays(dateOfBirth));
+        user.setPhoneNumber(phoneNumber);
+
+        var expected = validator.validate(user).stream()
+                .map(violation -> new Violation(violation.getPropertyPath().toString(), violation.getMessage()))
+                .sorted(VIOLATION_ORDER)
+                .toList();
+        var actual = validationService.validate(user).stream()
+                .sorted(VIOLATION_ORDER)
+                .toList();
+
+        assert (expected.equals(actual)) : expected + " != " + actual;
+        if (userValidator.supports(user)) {
+            assert (userValidator.validate(user).stream().sorted(VIOLATION_ORDER).toList().equals(expected));
+        }
+    }
+
+    /**
+     * does the fast UserValidator checks the text lengths like @Size on User
+     *
+     * @param emailLength     - length of the email local part
+     * @param firstNameLength - first name length
+     * @param lastNameLength  - last name length
+     * @param addressLength   - address length
+     */
+    @ParameterizedTest
+    @CsvSource({
+            "10, 255, 255, 255",
+            "10, 256, 1, 0",
+            "10, 1, 256, 300",
+            "64, 1, 1, 1"
+    })
+    public void userValidatorLengthTest(int emailLength, int firstNameLength, int lastNameLength, int addressLength) {
+        var user = new User();
+        user.setEmail("a".repeat(emailLength) + "@" + "b".repeat(63) + "." + "c".repeat(63) + "." + "d".repeat(63) + ".com");
+        user.setFirstName("f".repeat(firstNameLength));
+        user.setLastName("l".repeat(lastNameLength));
+        user.setAddress("a".repeat(addressLength));
+
+        var expected = validator.validate(user).stream()
+                .map(violation -> new Violation(violation.getPropertyPath().toString(), violation.getMessage()))
+                .sorted(VIOLATION_ORDER)
+                .toList();
+        var actual = userValidator.validate(user).stream()
+                .sorted(VIOLATION_ORDER)
+                .toList();
+
+        assert (expected.equals(actual)) : expected + " != " + actual;
+        assert (expected.size() == (firstNameLength > 255 ? 1 : 0) + (lastNameLength > 255 ? 1 : 0)
+                + (addressLength > 255 ? 1 : 0) + (user.getEmail().length() > 255 ? 1 : 0));
+    }
 }